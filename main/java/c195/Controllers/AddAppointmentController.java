@@ -1,30 +1,33 @@
 package c195.Controllers;
 
 import c195.DAO.AppointmentsDao;
-import c195.DAO.ContactsDao;
-import c195.DAO.CustomersDao;
-import c195.DAO.UsersDao;
+import c195.DAO.AsyncDao;
+import c195.DAO.ReferenceData;
+import c195.Helper.AppointmentIndex;
+import c195.Helper.BusinessCalendar;
+import c195.Helper.CustomerTypeAhead;
 import c195.Helper.DateTimeFormat;
+import c195.Helper.FreeSlotFinder;
 import c195.Helper.GenericInterface;
+import c195.Helper.Refreshable;
+import c195.Helper.TaskGroup;
+import c195.Helper.ViewRegistry;
 import c195.Model.Contact;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.Objects;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
@@ -33,7 +36,7 @@ import java.util.ResourceBundle;
  * This class handles user inputs from the UI for creating a new appointment.
  * It provides functionality to save the new appointment to the database or cancel the operation.
  */
-public class AddAppointmentController implements Initializable {
+public class AddAppointmentController implements Initializable, Refreshable {
 
     public TextField apptIdTxt;
     public TextField titleTxt;
@@ -49,9 +52,17 @@ public class AddAppointmentController implements Initializable {
     public ComboBox<Integer> userIdCombo;
     public Button addApptSaveBtn;
     public Button addApptCancelBtn;
+    public ComboBox<Integer> durationCombo;
+    public Button findSlotBtn;
+    public ComboBox<LocalDateTime> freeSlotCombo;
+    private final TaskGroup tasks = new TaskGroup();
+    private static final int searchDays = Math.max(1, Integer.getInteger("c195.slots.searchDays", 30));
+    private static final int slotResults = 10;
 
     /**
-     * Sets the default values for date pickers and time choice boxes, populates the user and customer combo boxes, and configures the contactName combo box.
+     * Lists the business hours of the picked dates in the time choice boxes, following the date pickers, fills the duration combo box with appointment lengths, configures the contactName and free slot combo boxes,
+     * and makes the customer combo box a type-ahead field with {@link CustomerTypeAhead}.
+     * The form is reset and the combo boxes are filled by {@link #refresh()} each time the view is shown.
      *<p><b>
      * The lambda expressions used here are used to define how the items of the ListView in the ComboBox are displayed.</b>
      * I used anonymous classes to override the necessary methods, providing custom cell output.
@@ -62,7 +73,60 @@ public class AddAppointmentController implements Initializable {
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
+        startDatePicker.valueProperty().addListener((observable, oldDate, newDate) -> showSlots(startTimeChoice, newDate));
+        endDatePicker.valueProperty().addListener((observable, oldDate, newDate) -> showSlots(endTimeChoice, newDate));
+        showSlots(startTimeChoice, LocalDate.now());
+        showSlots(endTimeChoice, LocalDate.now());
+        CustomerTypeAhead.bind(custIdCombo, tasks);
+
+        for (int minutes = BusinessCalendar.slotMinutes; minutes <= 120; minutes += BusinessCalendar.slotMinutes) {
+            durationCombo.getItems().add(minutes);
+        }
+        DateTimeFormatter slotFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        freeSlotCombo.setConverter(new StringConverter<LocalDateTime>() {
+            @Override
+            public String toString(LocalDateTime slot) {
+                return slot == null ? "" : slot.format(slotFormat);
+            }
+            @Override
+            public LocalDateTime fromString(String string) {
+                return null;
+            }
+        });
+
+        // Set up the cellFactory for the contact name combo box using a lambda expression
+        contNameCombo.setCellFactory(lv -> new ListCell<Contact>() {
+            @Override
+            protected void updateItem(Contact item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? "" : item.getName());
+            }
+        });
+        contNameCombo.setConverter(new StringConverter<Contact>() {
+            @Override
+            public String toString(Contact contact) {
+                return contact == null ? "" : contact.getName();
+            }
+            @Override
+            public Contact fromString(String string) {
+                return contNameCombo.getItems().stream().filter(item ->
+                        item.getName().equals(string)).findFirst().orElse(null);
+            }
+        });
+    }
+
+    /**
+     * Clears the input left from the previous visit, sets the default values for date pickers and time choice boxes,
+     * populates the user and contact combo boxes from the cached reference data, which may have changed since, and clears the customer type-ahead field.
+     */
+    @Override
+    public void refresh() {
+        addApptSaveBtn.setDisable(false);
         try {
+            titleTxt.clear();
+            descriptionTxt.clear();
+            locationTxt.clear();
+            typeTxt.clear();
             startDatePicker.setValue(LocalDate.now());
             endDatePicker.setValue(LocalDate.now());
 
@@ -70,54 +134,77 @@ public class AddAppointmentController implements Initializable {
             startTimeChoice.setValue(nowTruncated);
             endTimeChoice.setValue(nowTruncated);
 
-            LocalTime easternStartHr = DateTimeFormat.easternTime().toLocalTime();
-            LocalTime easternEndHr = DateTimeFormat.easternTime().toLocalTime().plusHours(14);
-
-            while(easternStartHr.isBefore(easternEndHr.plusSeconds(1))) {
-                startTimeChoice.getItems().add(easternStartHr);
-                endTimeChoice.getItems().add(easternStartHr);
-                easternStartHr = easternStartHr.plusMinutes(15);
-            }
-
-            userIdCombo.getItems().addAll(UsersDao.userId());
-            custIdCombo.getItems().addAll(CustomersDao.custId());
+            userIdCombo.getItems().setAll(ReferenceData.userIds());
+            contNameCombo.getItems().setAll(ReferenceData.contacts());
+            userIdCombo.setValue(null);
+            CustomerTypeAhead.show(custIdCombo, tasks, null);
+            contNameCombo.setValue(null);
+            durationCombo.setValue(30);
+            freeSlotCombo.getItems().clear();
+            freeSlotCombo.setValue(null);
+        } catch (SQLException throwable) {
+            throwable.printStackTrace();
+        }
+    }
 
-            for (Contact contact : ContactsDao.contName()) {
-                contNameCombo.getItems().add(contact);
+    /**
+     * Finds, in the background, the earliest start times at which the selected contact and customer are both free for the selected duration,
+     * searching from the start date, or today, over the next days set by the {@code c195.slots.searchDays} system property, 30 by default.
+     * The start times are listed in the free slot combo box.
+     * @param event The action event triggered by clicking the 'Find Slot' button.
+     */
+    public void OnFindSlotBtn(ActionEvent event) {
+        Contact contact = contNameCombo.getValue();
+        Integer custId = custIdCombo.getValue();
+        Integer minutes = durationCombo.getValue();
+        if (contact == null || custId == null || minutes == null) {
+            new Alert(Alert.AlertType.WARNING, "Please select a Contact, a Customer ID and a Duration to find a free slot.").showAndWait();
+            return;
+        }
+        LocalDate from = startDatePicker.getValue() == null || startDatePicker.getValue().isBefore(LocalDate.now()) ? LocalDate.now() : startDatePicker.getValue();
+        LocalDate to = from.plusDays(searchDays - 1);
+        findSlotBtn.setDisable(true);
+        AsyncDao.load(tasks, () -> FreeSlotFinder.find(contact.getId(), custId, Duration.ofMinutes(minutes), from, to, slotResults), slots -> {
+            findSlotBtn.setDisable(false);
+            freeSlotCombo.getItems().setAll(slots);
+            if (slots.isEmpty()) {
+                new Alert(Alert.AlertType.INFORMATION, "No free slot was found in the " + searchDays + " days from " + from + ".").showAndWait();
+            } else {
+                freeSlotCombo.show();
             }
-            // Set up the cellFactory for the contact name combo box using a lambda expression
-            contNameCombo.setCellFactory(lv -> new ListCell<Contact>() {
-                @Override
-                protected void updateItem(Contact item, boolean empty) {
-                    super.updateItem(item, empty);
-                    setText(empty ? "" : item.getName());
-                }
-            });
-            contNameCombo.setConverter(new StringConverter<Contact>() {
-                @Override
-                public String toString(Contact contact) {
-                    return contact == null ? "" : contact.getName();
-                }
-                @Override
-                public Contact fromString(String string) {
-                    return contNameCombo.getItems().stream().filter(item ->
-                            item.getName().equals(string)).findFirst().orElse(null);
-                }
-            });
-        } catch (SQLException throwable) {
+        }, throwable -> {
+            findSlotBtn.setDisable(false);
             throwable.printStackTrace();
+            new Alert(Alert.AlertType.WARNING, "Free slots could not be found: " + throwable.getMessage()).showAndWait();
+        });
+    }
+
+    /**
+     * Fills the start and end date and time with the free slot selected, ending after the selected duration.
+     * @param event The action event triggered by selecting an item in the free slot combo box.
+     */
+    public void OnFreeSlotCombo(ActionEvent event) {
+        LocalDateTime start = freeSlotCombo.getValue();
+        Integer minutes = durationCombo.getValue();
+        if (start == null || minutes == null) {
+            return;
         }
+        LocalDateTime end = start.plusMinutes(minutes);
+        startDatePicker.setValue(start.toLocalDate());
+        startTimeChoice.setValue(start.toLocalTime());
+        endDatePicker.setValue(end.toLocalDate());
+        endTimeChoice.setValue(end.toLocalTime());
     }
 
     /**
      * Validates the user input and saves the new appointment to the database if validation passes.
+     * The customer and contact overlap checks and the insert run in the background, so the form stays responsive while the overlap index is loaded on first use;
+     * the Save button is disabled until they finish, so a second click cannot save the same appointment twice.
      * Displays error messages for any validation failures.
      * <p><b>
      * The lambda expression is used here to streamline the display of warning messages for various validation failures.
      * </b></p>
      * @param event The action event triggered by clicking the 'Save' button.
-     * @throws SQLException If there is a database access error.
-     * @throws IOException If there is an I/O error.
      */
     public void OnAddApptSaveBtn(ActionEvent event) {
         try {
@@ -146,12 +233,12 @@ public class AddAppointmentController implements Initializable {
                 errorMessage.performAction("Please select a User ID.");
             } else if (contNameCombo.getSelectionModel().isEmpty()) {
                 errorMessage.performAction("Please select a Contact ID.");
-            } else if (custIdCombo.getSelectionModel().isEmpty()) {
+            } else if (custIdCombo.getValue() == null) {
                 errorMessage.performAction("Please select a Customer ID.");
             } else if (endDateTime.isBefore(beginDateTime)) {
                 errorMessage.performAction("Start date and time must occur before end date and time.");
-            } else if (DateTimeFormat.checkApptOverlap(beginDateTime, endDateTime, custIdCombo.getValue(), -1)) {
-                errorMessage.performAction("Overlapping appointment times detected.");
+            } else if (!BusinessCalendar.withinBusinessHours(beginDateTime, endDateTime)) {
+                errorMessage.performAction("Appointments must be within business hours, 8:00 a.m. to 10:00 p.m. Eastern Time, on a day the business is open.");
             } else {
                 String appId = null;
                 String title = titleTxt.getText();
@@ -164,21 +251,55 @@ public class AddAppointmentController implements Initializable {
                 Contact selectedContact = contNameCombo.getSelectionModel().getSelectedItem();
                 int contId = selectedContact.getId();
 
-                AppointmentsDao.AddAppointment(title, description, location, type, beginDateTime, endDateTime, custId, userId, contId);
-
-                Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("appointment-view.fxml")));
-                Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                Scene scene = new Scene(root);
-                stage.setScene(scene);
-                stage.show();
+                addApptSaveBtn.setDisable(true);
+                AsyncDao.load(tasks, () -> {
+                    if (DateTimeFormat.checkApptOverlap(beginDateTime, endDateTime, custId, -1)) {
+                        return "Overlapping appointment times detected.";
+                    }
+                    if (AppointmentIndex.contactOverlap(beginDateTime, endDateTime, contId, -1)) {
+                        return "The contact already has an appointment at this time.";
+                    }
+                    AppointmentsDao.AddAppointment(title, description, location, type, beginDateTime, endDateTime, custId, userId, contId);
+                    return null;
+                }, overlap -> {
+                    addApptSaveBtn.setDisable(false);
+                    try {
+                        if (overlap != null) {
+                            errorMessage.performAction(overlap);
+                            return;
+                        }
+                        tasks.cancelAll();
+                        ViewRegistry.show(event, "appointment-view.fxml");
+                    } catch (IOException e) {
+                        showError(e);
+                    }
+                }, throwable -> {
+                    addApptSaveBtn.setDisable(false);
+                    showError(throwable);
+                });
             }
-        } catch (SQLException | IOException e) {
-            Alert alert = new Alert(Alert.AlertType.WARNING);
-            alert.setContentText(e.getMessage());
-            alert.showAndWait();
+        } catch (IOException e) {
+            showError(e);
         }
     }
 
+    private void showError(Throwable throwable) {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setContentText(throwable.getMessage());
+        alert.showAndWait();
+    }
+
+    /**
+     * Lists the business hours slots of a date in a time choice box, read from the slot times cached by {@link BusinessCalendar}, keeping the time already chosen.
+     * @param choice The start or end time choice box.
+     * @param date The date picked for it.
+     */
+    private static void showSlots(ChoiceBox<LocalTime> choice, LocalDate date) {
+        LocalTime selected = choice.getValue();
+        choice.getItems().setAll(date == null ? List.of() : BusinessCalendar.slots(date));
+        choice.setValue(selected);
+    }
+
     /**
      * Prompts the user to confirm cancellation. If confirmed, discards any input and returns to the appointment view without saving the new appointment.
      * @param event The action event triggered by clicking the 'Cancel' button.
@@ -188,11 +309,8 @@ public class AddAppointmentController implements Initializable {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Confirm cancellation. \nAppointment will not be saved to the database.");
         Optional<ButtonType> saving = alert.showAndWait();
         if (saving.isPresent() && saving.get() == ButtonType.OK) {
-            Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("appointment-view.fxml")));
-            Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root);
-            stage.setScene(scene);
-            stage.show();
+            tasks.cancelAll();
+            ViewRegistry.show(event, "appointment-view.fxml");
         }
     }
 
@@ -1,50 +1,49 @@
 package c195.Controllers;
 
-import c195.DAO.CountriesDao;
 import c195.DAO.CustomersDao;
-import c195.DAO.FirstLevelDivisionsDao;
+import c195.DAO.ReferenceData;
 import c195.Helper.GenericInterface;
+import c195.Helper.Refreshable;
+import c195.Helper.ViewRegistry;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
-import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.net.URL;
 import java.sql.SQLException;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.ResourceBundle;
 
 /**
  * Handles user inputs from the UI for creating a new customer.
  * It provides functionality to save the new customer to the database or cancel the operation.
  */
-public class AddCustomerController implements Initializable {
+public class AddCustomerController implements Refreshable {
     public TextField custIdTxt;
     public TextField custFirstNameTxt;
     public TextField custLastNameTxt;
     public TextField addressTxt;
     public TextField postCodeTxt;
     public TextField phoneNumberTxt;
-    public ComboBox countryCombo;
-    public ComboBox divisionCombo;
+    public ComboBox<String> countryCombo;
+    public ComboBox<String> divisionCombo;
     public Button addCustomerCancelBtn;
     public Button addCustomerSaveBtn;
 
     /**
-     * Sets up the country combo box with available countries.
-     * @param url The location used to resolve relative paths for the root object.
-     * @param resourceBundle The resources used to localize the root object.
+     * Clears the input left from the previous visit and sets up the country combo box with available countries from the cached reference data.
+     * Called each time the view is shown.
      */
     @Override
-    public void initialize(URL url, ResourceBundle resourceBundle) {
+    public void refresh() {
         try {
-            countryCombo.getItems().addAll(CountriesDao.countries());
+            custFirstNameTxt.clear();
+            custLastNameTxt.clear();
+            addressTxt.clear();
+            postCodeTxt.clear();
+            phoneNumberTxt.clear();
+            countryCombo.setValue(null);
+            divisionCombo.getItems().clear();
+            divisionCombo.setValue(null);
+            countryCombo.getItems().setAll(ReferenceData.countries());
         } catch (SQLException throwable) {
             throwable.printStackTrace();
         }
@@ -60,8 +59,8 @@ public class AddCustomerController implements Initializable {
         divisionCombo.getItems().clear();
         countryCombo.getSelectionModel().getSelectedItem();
         String countryName = String.valueOf(countryCombo.getSelectionModel().getSelectedItem());
-        int countryId = CountriesDao.countriesId(countryName);
-        divisionCombo.getItems().addAll(FirstLevelDivisionsDao.firstLvlDivisions(countryId));
+        int countryId = ReferenceData.countryId(countryName);
+        divisionCombo.getItems().addAll(ReferenceData.divisions(countryId));
     }
 
     /**
@@ -97,15 +96,11 @@ public class AddCustomerController implements Initializable {
                 String address = addressTxt.getText();
                 String postCode = postCodeTxt.getText();
                 String phoneNum = phoneNumberTxt.getText();
-                int divId = FirstLevelDivisionsDao.firstDivisionId(String.valueOf(divisionCombo.getValue()));
+                int divId = ReferenceData.divisionId(String.valueOf(divisionCombo.getValue()));
 
                 CustomersDao.AddCustomer(null, custName, address, postCode, phoneNum, divId);
 
-                Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("customer-view.fxml")));
-                Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                Scene scene = new Scene(root);
-                stage.setScene(scene);
-                stage.show();
+                ViewRegistry.show(event, "customer-view.fxml");
             }
         } catch (SQLException | IOException exception) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
@@ -124,11 +119,7 @@ public class AddCustomerController implements Initializable {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "New customer will not be saved to the database.");
         Optional<ButtonType> canceling = alert.showAndWait();
         if (canceling.isPresent() && canceling.get() == ButtonType.OK) {
-            Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("customer-view.fxml")));
-            Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root);
-            stage.setScene(scene);
-            stage.show();
+            ViewRegistry.show(event, "customer-view.fxml");
         }
     }
 
@@ -1,32 +1,46 @@
 package c195.Controllers;
 
+import c195.DAO.AppointmentImporter;
+import c195.DAO.AppointmentStore;
 import c195.DAO.AppointmentsDao;
+import c195.DAO.AsyncDao;
+import c195.Helper.AppointmentSearch;
+import c195.Helper.CellValues;
+import c195.Helper.DateTimeFormat;
 import c195.Helper.GenericInterface;
+import c195.Helper.Refreshable;
+import c195.Helper.TaskGroup;
+import c195.Helper.ViewRegistry;
 import c195.Model.Appointments;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.ResourceBundle;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * Controller class for managing appointments in a table view.
- * This class is responsible for initializing the table with data, handles adding, modifying, or deleting appointments, and filtering them based on different time criteria.
+ * This class is responsible for initializing the table with data, handles adding, modifying, deleting or importing appointments, and filtering them based on different time criteria.
+ * The search field narrows the table down to the appointments found by {@link AppointmentSearch}, best match first until a column header is clicked.
  */
-public class AppointmentController implements Initializable {
+public class AppointmentController implements Initializable, Refreshable {
 
     public TableView<Appointments> appointmentTable;
     public TableColumn<Appointments, Integer> apptIdColumn;
@@ -34,8 +48,8 @@ public class AppointmentController implements Initializable {
     public TableColumn<Appointments, String> descriptionColumn;
     public TableColumn<Appointments, String> locationColumn;
     public TableColumn<Appointments, String> typeColumn;
-    public TableColumn<Appointments, Timestamp> startsAtColumn;
-    public TableColumn<Appointments, Timestamp> endsAtColumn;
+    public TableColumn<Appointments, LocalDateTime> startsAtColumn;
+    public TableColumn<Appointments, LocalDateTime> endsAtColumn;
     public TableColumn<Appointments, Integer> custIdColumn;
     public TableColumn<Appointments, Integer> userIdColumn;
     public TableColumn<Appointments, Integer> contactIdColumn;
@@ -43,37 +57,132 @@ public class AppointmentController implements Initializable {
     public RadioButton allTimeRadio;
     public RadioButton thisMonthRadio;
     public RadioButton thisWeekRadio;
+    public TextField searchField;
     public Button addApptBtn;
     public Button modApptBtn;
     public Button delApptBtn;
+    public Button importApptBtn;
     public Button customersBtn;
     public Button reportsBtn;
     public Button exitBtn;
+    private static final int searchLimit = Math.max(1, Integer.getInteger("c195.search.limit", 500));
+    private final TaskGroup tasks = new TaskGroup();
+    private final ObjectProperty<Comparator<Appointments>> searchOrder = new SimpleObjectProperty<>();
+    private Map<Integer, Integer> searchRanks;
+    private final FilteredList<Appointments> filteredAppointments = new FilteredList<>(AppointmentStore.appointments());
+    private final SortedList<Appointments> sortedAppointments = new SortedList<>(filteredAppointments);
+    private Node placeholder;
+    private CompletableFuture<AppointmentImporter.Result> importing;
+    private Runnable importOutcome;
 
     /**
-     * This method initializes the table columns and loads the appointments into the table view.
+     * This method binds the table columns to the appointment getters, once for every filter, and shows the cached appointments of {@link AppointmentStore} in the table through a filtered and sorted view.
+     * Clicking a column header sorts the view; the filter is set by {@link #refresh()}, the time radio buttons and the search field.
      * @param url The location used to resolve relative paths for the root object.
      * @param resourceBundle The resources used to localize the root object.
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        try {
-            appointmentTable.setItems(AppointmentsDao.selectAllAppointments());
+        CellValues.bind(apptIdColumn, Appointments::getAppId);
+        CellValues.bind(titleColumn, Appointments::getTitle);
+        CellValues.bind(descriptionColumn, Appointments::getDescription);
+        CellValues.bind(locationColumn, Appointments::getLocation);
+        CellValues.bind(typeColumn, Appointments::getType);
+        CellValues.bind(startsAtColumn, Appointments::getBegin);
+        CellValues.bind(endsAtColumn, Appointments::getEnd);
+        CellValues.bind(custIdColumn, Appointments::getCustId);
+        CellValues.bind(userIdColumn, Appointments::getUserId);
+        CellValues.bind(contactIdColumn, Appointments::getContId);
+        sortedAppointments.comparatorProperty().bind(Bindings.createObjectBinding(
+                () -> appointmentTable.getComparator() != null ? appointmentTable.getComparator() : searchOrder.get(),
+                appointmentTable.comparatorProperty(), searchOrder));
+        searchField.textProperty().addListener((observable, previous, text) -> search(text));
+        appointmentTable.setItems(sortedAppointments);
+        placeholder = appointmentTable.getPlaceholder();
+    }
 
-            apptIdColumn.setCellValueFactory(new PropertyValueFactory<>("appId"));
-            titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-            descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-            locationColumn.setCellValueFactory(new PropertyValueFactory<>("location"));
-            typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-            startsAtColumn.setCellValueFactory(new PropertyValueFactory<>("begin"));
-            endsAtColumn.setCellValueFactory(new PropertyValueFactory<>("end"));
-            custIdColumn.setCellValueFactory(new PropertyValueFactory<>("custId"));
-            userIdColumn.setCellValueFactory(new PropertyValueFactory<>("userId"));
-            contactIdColumn.setCellValueFactory(new PropertyValueFactory<>("contId"));
+    /**
+     * Applies the selected time filter again, as the current month or week may have changed, and loads the appointment cache in the background on the first visit.
+     * Changes saved on the other views are already in the cache, so later visits make no database call.
+     * The outcome of an import that finished while the user was on another view is shown once this view is back on screen.
+     */
+    @Override
+    public void refresh() {
+        importApptBtn.setDisable(importing != null);
+        Platform.runLater(this::showImportOutcome);
+        applyFilter();
+        CompletableFuture<Void> load = AppointmentStore.load();
+        if (!load.isDone()) {
+            appointmentTable.setPlaceholder(new Label("Loading..."));
+            load.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    appointmentTable.setPlaceholder(placeholder);
+                } else {
+                    throwable.printStackTrace();
+                    appointmentTable.setPlaceholder(new Label("Unable to load data."));
+                }
+            });
+        }
+    }
 
-        } catch (SQLException throwable) {
+    /**
+     * Filters the cached appointments by the selected time radio button: all of them, those starting this month, or those starting this week.
+     * While a search is shown, only the appointments it found are kept.
+     */
+    private void applyFilter() {
+        Predicate<Appointments> filter = null;
+        if (thisMonthRadio.isSelected()) {
+            LocalDateTime monthStart = DateTimeFormat.startOfMonth();
+            filter = AppointmentStore.between(monthStart, monthStart.plusMonths(1));
+        } else if (thisWeekRadio.isSelected()) {
+            LocalDateTime weekStart = DateTimeFormat.startOfWeek();
+            filter = AppointmentStore.between(weekStart, weekStart.plusWeeks(1));
+        }
+        Map<Integer, Integer> ranks = searchRanks;
+        if (ranks != null) {
+            Predicate<Appointments> found = appointment -> ranks.containsKey(appointment.getAppId());
+            filter = filter == null ? found : filter.and(found);
+        }
+        filteredAppointments.setPredicate(filter);
+    }
+
+    /**
+     * Searches the appointments in the background for the words typed in the search field and shows the hits, best first.
+     * Results of a search the user has since typed past are dropped, and clearing the field shows every appointment again.
+     * @param text The text of the search field.
+     */
+    private void search(String text) {
+        if (text == null || text.isBlank()) {
+            showHits(null);
+            return;
+        }
+        AsyncDao.load(tasks, () -> AppointmentSearch.search(text, searchLimit), hits -> {
+            if (text.equals(searchField.getText())) {
+                showHits(hits);
+            }
+        }, throwable -> {
             throwable.printStackTrace();
+            appointmentTable.setPlaceholder(new Label("Unable to search."));
+        });
+    }
+
+    /**
+     * Filters the table down to the hits of a search and orders them by rank while no column header is sorted.
+     * @param hits The IDs of the hits, best first, or null to show every appointment.
+     */
+    private void showHits(List<Integer> hits) {
+        if (hits == null) {
+            searchRanks = null;
+            searchOrder.set(null);
+        } else {
+            Map<Integer, Integer> ranks = new HashMap<>(hits.size() * 2);
+            for (int i = 0; i < hits.size(); i++) {
+                ranks.put(hits.get(i), i);
+            }
+            searchRanks = ranks;
+            searchOrder.set(Comparator.comparingInt(appointment -> ranks.getOrDefault(appointment.getAppId(), Integer.MAX_VALUE)));
         }
+        applyFilter();
     }
 
     /**
@@ -82,11 +191,8 @@ public class AppointmentController implements Initializable {
      * @throws IOException If the FXML file cannot be loaded.
      */
     public void OnAddApptBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("addAppointment-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "addAppointment-view.fxml");
     }
 
     /**
@@ -95,17 +201,10 @@ public class AppointmentController implements Initializable {
      */
     public void OnModApptBtn(ActionEvent event) {
         try {
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(getClass().getResource("modAppointment-view.fxml"));
-            loader.load();
-
-            ModAppointmentController modify = loader.getController();
-            modify.ApptData(appointmentTable.getSelectionModel().getSelectedItem());
-
-            Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            Parent scene = loader.getRoot();
-            stage.setScene(new Scene(scene));
-            stage.show();
+            Appointments selected = Objects.requireNonNull(appointmentTable.getSelectionModel().getSelectedItem());
+            tasks.cancelAll();
+            ModAppointmentController modify = ViewRegistry.show(event, "modAppointment-view.fxml");
+            modify.ApptData(selected);
 
         } catch (NullPointerException | IOException e){
             System.out.println("Modify Error");
@@ -113,11 +212,10 @@ public class AppointmentController implements Initializable {
     }
 
     /**
-     * Confirms the deletion with the user and deletes the selected appointment if confirmed.
+     * Confirms the deletion with the user and deletes the selected appointment in the background if confirmed.
      * @param event The event that occurred.
-     * @throws SQLException If there is a database access error or the delete operation fails.
      */
-    public void OnDelApptBtn(ActionEvent event) throws SQLException {
+    public void OnDelApptBtn(ActionEvent event) {
         try {
             int custId = appointmentTable.getSelectionModel().getSelectedItem().getCustId();
             int apptId = appointmentTable.getSelectionModel().getSelectedItem().getAppId();
@@ -131,12 +229,11 @@ public class AppointmentController implements Initializable {
 
             if (result.isPresent() && result.get() == ButtonType.OK) {
 
-                AppointmentsDao.DeleteAppointment(apptId);
-                appointmentTable.setItems(AppointmentsDao.selectAllAppointments());
-
-                Alert infoAlert = new Alert(Alert.AlertType.INFORMATION, "Appointment ID " + apptId + " of type " + apptType + " deleted successfully.");
-                infoAlert.setHeaderText(null);
-                infoAlert.showAndWait();
+                AsyncDao.load(tasks, () -> AppointmentsDao.DeleteAppointment(apptId), effectedRows -> {
+                    Alert infoAlert = new Alert(Alert.AlertType.INFORMATION, "Appointment ID " + apptId + " of type " + apptType + " deleted successfully.");
+                    infoAlert.setHeaderText(null);
+                    infoAlert.showAndWait();
+                });
             } else {
 
             }
@@ -147,78 +244,92 @@ public class AppointmentController implements Initializable {
     }
 
     /**
-     * Handles the event when the 'All Time' radio button is selected.
-     * Loads all appointments into the table view.
+     * Asks the user for a CSV file of appointments and imports it in the background.
+     * The import is not part of the view's task group, so leaving the view does not cancel it, and the Import button stays disabled until it completes.
+     * When the import completes all appointments are shown, including the imported ones added to the cache, with a summary naming the reject report if any rows were rejected;
+     * if the user is on another view at that time, they are shown when the user comes back.
      * @param event The event that occurred.
      */
-    public void OnAllTimeRadio(ActionEvent event) {
-        try {
-            appointmentTable.setItems(AppointmentsDao.selectAllAppointments());
+    public void OnImportApptBtn(ActionEvent event) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Appointments");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(((Node) event.getSource()).getScene().getWindow());
+        if (file == null) {
+            return;
+        }
 
-            apptIdColumn.setCellValueFactory(new PropertyValueFactory<>("appId"));
-            titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-            descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-            locationColumn.setCellValueFactory(new PropertyValueFactory<>("location"));
-            typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-            startsAtColumn.setCellValueFactory(new PropertyValueFactory<>("begin"));
-            endsAtColumn.setCellValueFactory(new PropertyValueFactory<>("end"));
-            custIdColumn.setCellValueFactory(new PropertyValueFactory<>("custId"));
-            userIdColumn.setCellValueFactory(new PropertyValueFactory<>("userId"));
-            contactIdColumn.setCellValueFactory(new PropertyValueFactory<>("contId"));
+        importApptBtn.setDisable(true);
+        importing = AsyncDao.supply(() -> {
+            try {
+                return AppointmentImporter.importCsv(file.toPath());
+            } catch (IOException e) {
+                throw new SQLException(e.getMessage(), e);
+            }
+        });
+        importing.whenComplete((result, throwable) -> Platform.runLater(() -> {
+            importing = null;
+            importApptBtn.setDisable(false);
+            importOutcome = throwable == null ? () -> showImported(result) : () -> showImportError(throwable);
+            if (appointmentTable.getScene().getWindow() != null) {
+                showImportOutcome();
+            }
+        }));
+    }
 
-        } catch (SQLException throwable) {
-            throwable.printStackTrace();
+    private void showImportOutcome() {
+        Runnable outcome = importOutcome;
+        importOutcome = null;
+        if (outcome != null) {
+            outcome.run();
+        }
+    }
+
+    private void showImported(AppointmentImporter.Result result) {
+        allTimeRadio.setSelected(true);
+        applyFilter();
+
+        String summary = result.getImported() + " appointments imported, " + result.getRejected() + " rejected.";
+        if (result.getRejectReport() != null) {
+            summary += "\nThe rejected rows are listed in " + result.getRejectReport();
         }
+        Alert infoAlert = new Alert(Alert.AlertType.INFORMATION, summary);
+        infoAlert.setHeaderText(null);
+        infoAlert.setTitle("Import Complete");
+        infoAlert.showAndWait();
+    }
+
+    private void showImportError(Throwable throwable) {
+        Alert errorAlert = new Alert(Alert.AlertType.WARNING, "The file could not be imported: " + throwable.getMessage());
+        errorAlert.setHeaderText(null);
+        errorAlert.showAndWait();
+    }
+
+    /**
+     * Handles the event when the 'All Time' radio button is selected.
+     * Shows all cached appointments in the table view.
+     * @param event The event that occurred.
+     */
+    public void OnAllTimeRadio(ActionEvent event) {
+        applyFilter();
     }
 
     /**
      * Handles the event when the 'This Month' radio button is selected.
-     * Filters and loads appointments that are within the current month.
+     * Filters the cached appointments to those that are within the current month.
      * @param event The event that occurred.
      */
     public void OnThisMonthRadio(ActionEvent event) {
-        try {
-            appointmentTable.setItems(AppointmentsDao.selectAppsByMonth());
-
-            apptIdColumn.setCellValueFactory(new PropertyValueFactory<>("appId"));
-            titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-            descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-            locationColumn.setCellValueFactory(new PropertyValueFactory<>("location"));
-            typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-            startsAtColumn.setCellValueFactory(new PropertyValueFactory<>("begin"));
-            endsAtColumn.setCellValueFactory(new PropertyValueFactory<>("end"));
-            custIdColumn.setCellValueFactory(new PropertyValueFactory<>("custId"));
-            userIdColumn.setCellValueFactory(new PropertyValueFactory<>("userId"));
-            contactIdColumn.setCellValueFactory(new PropertyValueFactory<>("contId"));
-
-        } catch (SQLException throwable) {
-            throwable.printStackTrace();
-        }
+        applyFilter();
     }
 
     /**
      * Handles the event when the 'This Week' radio button is selected.
-     * Filters and loads appointments that are within the current week.
+     * Filters the cached appointments to those that are within the current week.
      * @param event The event that occurred.
      */
     public void OnThisWeekRadio(ActionEvent event) {
-        try {
-            appointmentTable.setItems(AppointmentsDao.selectAppsByWeek());
-
-            apptIdColumn.setCellValueFactory(new PropertyValueFactory<>("appId"));
-            titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-            descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-            locationColumn.setCellValueFactory(new PropertyValueFactory<>("location"));
-            typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-            startsAtColumn.setCellValueFactory(new PropertyValueFactory<>("begin"));
-            endsAtColumn.setCellValueFactory(new PropertyValueFactory<>("end"));
-            custIdColumn.setCellValueFactory(new PropertyValueFactory<>("custId"));
-            userIdColumn.setCellValueFactory(new PropertyValueFactory<>("userId"));
-            contactIdColumn.setCellValueFactory(new PropertyValueFactory<>("contId"));
-
-        } catch (SQLException throwable) {
-            throwable.printStackTrace();
-        }
+        applyFilter();
     }
 
     /**
@@ -227,11 +338,8 @@ public class AppointmentController implements Initializable {
      * @throws IOException If an I/O error occurs during view loading.
      */
     public void OnCustomersBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("customer-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "customer-view.fxml");
     }
 
     /**
@@ -240,11 +348,8 @@ public class AppointmentController implements Initializable {
      * @throws IOException If an I/O error occurs during view loading.
      */
     public void OnReportsBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("report-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "report-view.fxml");
     }
 
     /**
@@ -253,6 +358,7 @@ public class AppointmentController implements Initializable {
      */
     @FXML
     public void OnExitBtn(ActionEvent event) {
+        tasks.cancelAll();
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
         stage.close();
     }
@@ -1,39 +1,41 @@
 package c195.Controllers;
 
-import c195.DAO.AppointmentsDao;
+import c195.DAO.AsyncDao;
+import c195.DAO.CustomerStore;
 import c195.DAO.CustomersDao;
+import c195.Helper.CellValues;
+import c195.Helper.CustomerSearch;
 import c195.Helper.GenericInterface;
-import c195.Model.Appointments;
+import c195.Helper.Refreshable;
+import c195.Helper.TaskGroup;
+import c195.Helper.ViewRegistry;
 import c195.Model.Customers;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.ResourceBundle;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handles displaying a list of customers in a table view, and provides functionalities to add, modify, and delete customers.
  * Additionally, it supports navigation to appointments and reports related to the customers.
+ * The search field narrows the table down to the customers whose name, phone number, postal code or ID starts with the typed text, as found by {@link CustomerSearch}.
  */
-public class CustomerController implements Initializable {
+public class CustomerController implements Initializable, Refreshable {
     public TableView<Customers> customerTable;
     public TableColumn<Customers, Integer> custIdColumn;
     public TableColumn<Customers, String> custNameColumn;
     public TableColumn<Customers, String> addressColumn;
-    public TableColumn<Customers, Integer> postCodeColumn;
-    public TableColumn<Customers, Integer> phoneNumberColumn;
+    public TableColumn<Customers, String> postCodeColumn;
+    public TableColumn<Customers, String> phoneNumberColumn;
     public TableColumn<Customers, Integer> divIdColumn;
     public Button addCustBtn;
     public Button modCustBtn;
@@ -41,25 +43,75 @@ public class CustomerController implements Initializable {
     public Button appointmentsBtn;
     public Button reportsBtn;
     public Button exitBtn;
+    public TextField searchField;
+    private static final int searchLimit = Math.max(1, Integer.getInteger("c195.search.limit", 500));
+    private final TaskGroup tasks = new TaskGroup();
+    private final FilteredList<Customers> filteredCustomers = new FilteredList<>(CustomerStore.customers());
+    private final SortedList<Customers> sortedCustomers = new SortedList<>(filteredCustomers);
+    private Node placeholder;
 
     /**
-     * This method sets up the table columns and loads the customers into the table view.
+     * This method binds the table columns to the customer getters and shows the cached customers of {@link CustomerStore} in the table through a filtered and sorted view.
+     * The customers are loaded by {@link #refresh()} on the first visit and are then kept up to date by the customer mutators and {@link c195.DAO.DeltaSync}.
+     * Several customers can be selected so they can be deleted together.
      * @param url The location used to resolve relative paths for the root object.
      * @param resourceBundle The resources used to localize the root object.
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        try {
-            customerTable.setItems(CustomersDao.allCustomers());
-        } catch (SQLException throwable) {
+        customerTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        CellValues.bind(custIdColumn, Customers::getCustId);
+        CellValues.bind(custNameColumn, Customers::getCustName);
+        CellValues.bind(addressColumn, Customers::getAddress);
+        CellValues.bind(postCodeColumn, Customers::getZipcode);
+        CellValues.bind(phoneNumberColumn, Customers::getPhoneNum);
+        CellValues.bind(divIdColumn, Customers::getDivId);
+        sortedCustomers.comparatorProperty().bind(customerTable.comparatorProperty());
+        customerTable.setItems(sortedCustomers);
+        placeholder = customerTable.getPlaceholder();
+        searchField.textProperty().addListener((observable, previous, text) -> search(text));
+    }
+
+    /**
+     * Looks up the customers matching the text of the search field in the background and shows only those, or every customer once the field is cleared.
+     * Results of a search the user has since typed past are dropped.
+     * @param text The text of the search field.
+     */
+    private void search(String text) {
+        if (text == null || text.isBlank()) {
+            filteredCustomers.setPredicate(null);
+            return;
+        }
+        AsyncDao.load(tasks, () -> CustomerSearch.search(text, searchLimit), hits -> {
+            if (text.equals(searchField.getText())) {
+                Set<Integer> found = new HashSet<>(hits);
+                filteredCustomers.setPredicate(customer -> found.contains(customer.getCustId()));
+            }
+        }, throwable -> {
             throwable.printStackTrace();
+            customerTable.setPlaceholder(new Label("Unable to search."));
+        });
+    }
+
+    /**
+     * Clears the selection left from the previous visit and loads the customer cache in the background on the first visit.
+     * Changes saved on the other views are already in the cache, so later visits make no database call.
+     */
+    @Override
+    public void refresh() {
+        customerTable.getSelectionModel().clearSelection();
+        CompletableFuture<Void> load = CustomerStore.load();
+        if (!load.isDone()) {
+            customerTable.setPlaceholder(new Label("Loading..."));
+            load.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    customerTable.setPlaceholder(placeholder);
+                } else {
+                    throwable.printStackTrace();
+                    customerTable.setPlaceholder(new Label("Unable to load data."));
+                }
+            });
         }
-        custIdColumn.setCellValueFactory(new PropertyValueFactory<>("custId"));
-        custNameColumn.setCellValueFactory(new PropertyValueFactory<>("custName"));
-        addressColumn.setCellValueFactory(new PropertyValueFactory<>("address"));
-        postCodeColumn.setCellValueFactory(new PropertyValueFactory<>("zipcode"));
-        phoneNumberColumn.setCellValueFactory(new PropertyValueFactory<>("phoneNum"));
-        divIdColumn.setCellValueFactory(new PropertyValueFactory<>("divId"));
     }
 
     /**
@@ -68,11 +120,8 @@ public class CustomerController implements Initializable {
      * @throws IOException If the FXML file for the Add Customer view cannot be loaded.
      */
     public void OnAddCustBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("addCustomer-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "addCustomer-view.fxml");
     }
 
     /**
@@ -81,73 +130,80 @@ public class CustomerController implements Initializable {
      */
     public void OnModCustBtn(ActionEvent event) {
         try {
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(getClass().getResource("modCustomer-view.fxml"));
-            loader.load();
-
-            ModCustomerController mod = loader.getController();
-            mod.custFormInfo(customerTable.getSelectionModel().getSelectedItem());
-
-            Parent scene = loader.getRoot();
-            Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            stage.setScene(new Scene(scene));
-            stage.show();
+            Customers selected = Objects.requireNonNull(customerTable.getSelectionModel().getSelectedItem());
+            tasks.cancelAll();
+            ModCustomerController mod = ViewRegistry.show(event, "modCustomer-view.fxml");
+            mod.custFormInfo(selected);
         } catch (NullPointerException | IOException | SQLException ignored){
             System.out.println("Error.");
         }
     }
 
     /**
-     * Confirms the deletion with the user and deletes the selected customer and any associated appointments.
+     * Confirms the deletion with the user and deletes the selected customers and any associated appointments.
+     * The number of appointments is counted in the background and the confirmations are shown once the count completes.
      * @param event The action event triggered by clicking the Delete Customer button.
      */
     public void OnDelCustBtn(ActionEvent event) {
-        try {
-            Customers selectedCustomer = customerTable.getSelectionModel().getSelectedItem();
-            if (selectedCustomer == null) {
-                Alert alert = new Alert(Alert.AlertType.WARNING, "Please select a customer to delete.");
-                alert.showAndWait();
-                return;
+        List<Integer> custIds = new ArrayList<>();
+        for (Customers customer : customerTable.getSelectionModel().getSelectedItems()) {
+            if (customer != null) {
+                custIds.add(customer.getCustId());
             }
+        }
+        if (custIds.isEmpty()) {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "Please select a customer to delete.");
+            alert.showAndWait();
+            return;
+        }
 
-            int custId = selectedCustomer.getCustId();
-
-            List<Appointments> customerAppointments = AppointmentsDao.selectAppsByCust(custId);
-            if (!customerAppointments.isEmpty()) {
-                Alert appointmentAlert = new Alert(Alert.AlertType.CONFIRMATION,
-                        "This customer has " + customerAppointments.size() +
-                                " appointments. All customer's appointments must be deleted before deleting the customer. Proceed?");
-                appointmentAlert.setHeaderText("Delete All Appointments?");
-                appointmentAlert.setTitle("Confirm Appointment Deletion");
-
-                Optional<ButtonType> appointmentResult = appointmentAlert.showAndWait();
-                if (appointmentResult.isPresent() && appointmentResult.get() == ButtonType.OK) {
-                    for (Appointments appointment : customerAppointments) {
-                        AppointmentsDao.DeleteAppointment(appointment.getAppId());
-                    }
-                } else {
-                    return;
-                }
+        AsyncDao.load(tasks, () -> CustomersDao.countAppointments(custIds), appointmentCount -> confirmDelete(custIds, appointmentCount));
+    }
+
+    /**
+     * Asks the user to confirm deleting customers and their appointments, then deletes them in one transaction in the background.
+     * The deleted rows are removed from the table by {@link CustomersDao#DeleteCustomers(List)} instead of reloading it.
+     * @param custIds The IDs of the customers to delete.
+     * @param appointmentCount The number of appointments the customers have.
+     */
+    private void confirmDelete(List<Integer> custIds, int appointmentCount) {
+        String customers = custIds.size() == 1 ? "This customer has " : "These " + custIds.size() + " customers have ";
+        if (appointmentCount > 0) {
+            Alert appointmentAlert = new Alert(Alert.AlertType.CONFIRMATION,
+                    customers + appointmentCount +
+                            " appointments. All customer's appointments must be deleted before deleting the customer. Proceed?");
+            appointmentAlert.setHeaderText("Delete All Appointments?");
+            appointmentAlert.setTitle("Confirm Appointment Deletion");
+
+            Optional<ButtonType> appointmentResult = appointmentAlert.showAndWait();
+            if (appointmentResult.isEmpty() || appointmentResult.get() != ButtonType.OK) {
+                return;
             }
+        }
 
-            Alert confirmDialog = new Alert(Alert.AlertType.CONFIRMATION, "Are you sure you want to delete this customer?");
-            confirmDialog.setHeaderText(null);
-            confirmDialog.setTitle("Confirm Customer Deletion");
+        String question = custIds.size() == 1 ? "Are you sure you want to delete this customer?" : "Are you sure you want to delete these " + custIds.size() + " customers?";
+        Alert confirmDialog = new Alert(Alert.AlertType.CONFIRMATION, question);
+        confirmDialog.setHeaderText(null);
+        confirmDialog.setTitle("Confirm Customer Deletion");
 
-            Optional<ButtonType> result = confirmDialog.showAndWait();
-            if (result.isPresent() && result.get() == ButtonType.OK) {
-                int effectedRows = CustomersDao.DeleteCustomer(custId);
-                customerTable.setItems(CustomersDao.allCustomers());
+        Optional<ButtonType> result = confirmDialog.showAndWait();
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            AsyncDao.load(tasks, () -> CustomersDao.DeleteCustomers(custIds), effectedRows -> {
                 if (effectedRows > 0) {
-                    Alert infoAlert = new Alert(Alert.AlertType.INFORMATION, "Customer and all associated appointments deleted successfully.");
+                    Alert infoAlert = new Alert(Alert.AlertType.INFORMATION, effectedRows == 1
+                            ? "Customer and all associated appointments deleted successfully."
+                            : effectedRows + " customers and all associated appointments deleted successfully.");
                     infoAlert.setHeaderText(null);
                     infoAlert.showAndWait();
                 } else {
                     System.out.println("No customer was deleted.");
                 }
-            }
-        } catch (NullPointerException | SQLException e) {
-            e.printStackTrace();
+            }, throwable -> {
+                throwable.printStackTrace();
+                Alert errorAlert = new Alert(Alert.AlertType.ERROR, "The customers could not be deleted. No changes were made.");
+                errorAlert.setHeaderText(null);
+                errorAlert.showAndWait();
+            });
         }
     }
 
@@ -157,11 +213,8 @@ public class CustomerController implements Initializable {
      * @throws IOException If an I/O error occurs during view loading.
      */
     public void OnAppointmentsBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("appointment-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "appointment-view.fxml");
     }
 
     /**
@@ -170,11 +223,8 @@ public class CustomerController implements Initializable {
      * @throws IOException If an I/O error occurs during view loading.
      */
     public void OnReportsBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("report-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "report-view.fxml");
     }
 
     /**
@@ -182,6 +232,7 @@ public class CustomerController implements Initializable {
      * @param event The event triggered by clicking the Exit button.
      */
     public void OnExitBtn(ActionEvent event) {
+        tasks.cancelAll();
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
         stage.close();
     }
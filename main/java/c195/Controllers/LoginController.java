@@ -1,31 +1,30 @@
 package c195.Controllers;
 
 import c195.DAO.AppointmentsDao;
+import c195.DAO.AsyncDao;
+import c195.DAO.DeltaSync;
+import c195.DAO.ReferenceData;
 import c195.DAO.UsersDao;
 import c195.Helper.DateTimeFormat;
+import c195.Helper.LoginLog;
+import c195.Helper.ReminderScheduler;
+import c195.Helper.ViewRegistry;
 import c195.Model.Users;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.sql.SQLException;
 import java.time.ZoneId;
 import java.util.Locale;
-import java.util.Objects;
 import java.util.ResourceBundle;
 import java.util.TimeZone;
 
@@ -65,6 +64,7 @@ public class LoginController implements Initializable {
      * Handles the login submission.
      * Validates user credentials and navigates to the appointment view if successful.
      * Logs login attempts and displays appropriate alerts for login failures or pending appointments.
+     * After a successful login the reference data used by the forms and the other views are loaded in the background and appointment reminders are started.
      * @param actionEvent The event triggered by clicking the login submit button.
      * @throws Exception If there is an error during login validation.
      */
@@ -96,6 +96,9 @@ public class LoginController implements Initializable {
                 }
             } else {
                 loginTracking("Login Successful");
+                AsyncDao.supply(ReferenceData::warmUp);
+                ReminderScheduler.start();
+                DeltaSync.start();
 
                 if (Locale.getDefault().getLanguage().equals("fr")) {
                     ResourceBundle rb = ResourceBundle.getBundle("Lang", Locale.getDefault());
@@ -111,11 +114,8 @@ public class LoginController implements Initializable {
                     alert.showAndWait();
                 }
 
-                Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("appointment-view.fxml")));
-                Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-                Scene scene = new Scene(root);
-                stage.setScene(scene);
-                stage.show();
+                ViewRegistry.show(actionEvent, "appointment-view.fxml");
+                ViewRegistry.preload();
             }
         } catch (IOException | SQLException e) {
             System.out.println("Error.");
@@ -124,13 +124,11 @@ public class LoginController implements Initializable {
 
     /**
      * Logs login attempts to a file with a timestamp, username, and the result of the login attempt.
+     * The line is handed to {@link LoginLog}, which appends it in the background so the login does not wait on the file.
      * @param loginLog The string to log, indicating the outcome of the login attempt.
-     * @throws Exception If there is an error writing to the log file.
      */
-    private void loginTracking(String loginLog) throws Exception {
-        PrintWriter print = new PrintWriter(new FileOutputStream(new File("login_activity.txt"), true));
-        print.append("Date and Time of access: ").append(DateTimeFormat.localTime()).append(" - User Name: ").append(UserNameTxt.getText()).append(" - ").append(loginLog).append("\n");
-        print.close();
+    private void loginTracking(String loginLog) {
+        LoginLog.append("Date and Time of access: " + DateTimeFormat.localTime() + " - User Name: " + UserNameTxt.getText() + " - " + loginLog);
     }
 
     /**
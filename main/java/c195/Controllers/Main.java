@@ -1,9 +1,12 @@
 package c195.Controllers;
 
+import c195.DAO.AsyncDao;
+import c195.DAO.DeltaSync;
 import c195.DAO.JDBC;
+import c195.Helper.LoginLog;
+import c195.Helper.ReminderScheduler;
+import c195.Helper.ViewRegistry;
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
@@ -15,22 +18,19 @@ import java.io.IOException;
 public class Main extends Application {
 
     /**
-     * This method initializes the first FXML view, sets the application title, and displays the primary scene.
+     * This method sets the application title and displays the login view through the view registry, which keeps it with the other views.
      * @param stage The primary stage for this application, onto which the application scene can be set.
      * @throws IOException If the FXML file cannot be loaded.
      */
     @Override
     public void start(Stage stage) throws IOException {
-        FXMLLoader fxmlLoader = new FXMLLoader(Main.class.getResource("login-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 600, 400);
         stage.setTitle("Appointment Scheduler");
-        stage.setScene(scene);
-        stage.show();
+        ViewRegistry.show(stage, "login-view.fxml");
     }
 
     /**
      * The main entry point for a JavaFX application.
-     * This method opens a connection to the database, launches the JavaFX application, and closes the database connection when the application is closed.
+     * This method opens a connection to the database, launches the JavaFX application, and stops the appointment reminders, the change polling and the background DAO threads, closes the database connection and flushes the login activity log when the application is closed.
      * @param args The command line arguments passed to the application.
      */
     public static void main(String[] args) {
@@ -39,7 +39,11 @@ public class Main extends Application {
 
         launch();
 
+        ReminderScheduler.stop();
+        DeltaSync.stop();
+        AsyncDao.shutdown();
         JDBC.closeConnection();
+        LoginLog.close();
 
     }
 }
\ No newline at end of file
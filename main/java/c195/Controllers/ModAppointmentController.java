@@ -1,27 +1,28 @@
 package c195.Controllers;
 
 import c195.DAO.AppointmentsDao;
-import c195.DAO.ContactsDao;
-import c195.DAO.CustomersDao;
-import c195.DAO.UsersDao;
+import c195.DAO.AsyncDao;
+import c195.DAO.ReferenceData;
+import c195.Helper.AppointmentIndex;
+import c195.Helper.BusinessCalendar;
+import c195.Helper.CustomerTypeAhead;
 import c195.Helper.DateTimeFormat;
 import c195.Helper.GenericInterface;
+import c195.Helper.Refreshable;
+import c195.Helper.TaskGroup;
+import c195.Helper.ViewRegistry;
 import c195.Model.Appointments;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.Objects;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
@@ -29,7 +30,7 @@ import java.util.ResourceBundle;
  * This class allows for editing appointment details such as title, description, location, type, start and end times, and IDs for customer, user, and contact.
  * It handles loading existing appointment data into the form, validating user inputs, and saving the updated appointment details to the database.
  */
-public class ModAppointmentController implements Initializable {
+public class ModAppointmentController implements Initializable, Refreshable {
 
     public TextField apptIdTxt;
     public TextField titleTxt;
@@ -43,27 +44,35 @@ public class ModAppointmentController implements Initializable {
     public ChoiceBox<LocalTime> endTimeChoice;
     public ComboBox<Integer> custIdCombo;
     public ComboBox<Integer> userIdCombo;
+    public Button modApptSaveBtn;
+    private final TaskGroup tasks = new TaskGroup();
     private Appointments appointmentSelected = null;
 
     /**
-     * Sets up the time choice boxes with appropriate times and populates the user, customer, and contact ID combo boxes.
+     * Lists the business hours of the picked dates in the time choice boxes, following the date pickers, and makes the customer combo box a type-ahead field with {@link CustomerTypeAhead}.
+     * The other ID combo boxes are filled by {@link #refresh()} each time the view is shown.
      * @param url The location used to resolve relative paths for the root object.
      * @param resourceBundle The resources used to localize the root object.
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        try {
-            LocalTime easternStartHr = DateTimeFormat.easternTime().toLocalTime();
-            LocalTime easternEndHr = DateTimeFormat.easternTime().toLocalTime().plusHours(14);
+        startDatePicker.valueProperty().addListener((observable, oldDate, newDate) -> showSlots(startTimeChoice, newDate));
+        endDatePicker.valueProperty().addListener((observable, oldDate, newDate) -> showSlots(endTimeChoice, newDate));
+        showSlots(startTimeChoice, LocalDate.now());
+        showSlots(endTimeChoice, LocalDate.now());
+        CustomerTypeAhead.bind(custIdCombo, tasks);
+    }
 
-            while(easternStartHr.isBefore(easternEndHr.plusSeconds(1))) {
-                startTimeChoice.getItems().add(easternStartHr);
-                endTimeChoice.getItems().add(easternStartHr);
-                easternStartHr = easternStartHr.plusMinutes(15);
-            }
-            userIdCombo.getItems().addAll(UsersDao.userId());
-            custIdCombo.getItems().addAll(CustomersDao.custId());
-            contIdCombo.getItems().addAll(ContactsDao.contId());
+    /**
+     * Populates the user and contact ID combo boxes from the cached reference data, which may have changed since the last visit.
+     * The appointment to edit is loaded afterwards by {@link #ApptData(Appointments)}.
+     */
+    @Override
+    public void refresh() {
+        modApptSaveBtn.setDisable(false);
+        try {
+            userIdCombo.getItems().setAll(ReferenceData.userIds());
+            contIdCombo.getItems().setAll(ReferenceData.contactIds());
         } catch (SQLException throwable) {
             throwable.printStackTrace();
         }
@@ -86,12 +95,14 @@ public class ModAppointmentController implements Initializable {
         startTimeChoice.setValue(appointmentSelected.getBegin().toLocalTime());
         endDatePicker.setValue(appointmentSelected.getEnd().toLocalDate());
         endTimeChoice.setValue(appointmentSelected.getEnd().toLocalTime());
-        custIdCombo.setValue(appointmentSelected.getCustId());
+        CustomerTypeAhead.show(custIdCombo, tasks, appointmentSelected.getCustId());
         userIdCombo.setValue(appointmentSelected.getUserId());
     }
 
     /**
      * Validates the user input and updates the appointment in the database if validation passes.
+     * The customer and contact overlap checks and the update run in the background, so the form stays responsive while the overlap index is loaded on first use;
+     * the Save button is disabled until they finish, so a second click cannot save the same appointment twice.
      * Displays error messages for any validation failures.
      * <p><b>
      * The lambda expression is used here to streamline the display of warning messages for various validation failures.
@@ -125,12 +136,12 @@ public class ModAppointmentController implements Initializable {
                 errorMessage.performAction("Please select a User ID.");
             } else if (contIdCombo.getSelectionModel().isEmpty()) {
                 errorMessage.performAction("Please select a Contact ID.");
-            } else if (custIdCombo.getSelectionModel().isEmpty()) {
+            } else if (custIdCombo.getValue() == null) {
                 errorMessage.performAction("Please select a Customer ID.");
             } else if (endDateTime.isBefore(beginDateTime)) {
                 errorMessage.performAction("Start date must occur before end date.");
-            } else if (DateTimeFormat.checkApptOverlap(beginDateTime, endDateTime, custIdCombo.getValue(), Integer.parseInt(apptIdTxt.getText()))) {
-                errorMessage.performAction("Overlapping appointment times detected.");
+            } else if (!BusinessCalendar.withinBusinessHours(beginDateTime, endDateTime)) {
+                errorMessage.performAction("Appointments must be within business hours, 8:00 a.m. to 10:00 p.m. Eastern Time, on a day the business is open.");
             } else {
                 int appId = appointmentSelected.getAppId();
                 String title = titleTxt.getText();
@@ -141,19 +152,49 @@ public class ModAppointmentController implements Initializable {
                 int userId = userIdCombo.getValue();
                 int contId = contIdCombo.getValue();
 
-                AppointmentsDao.ModifyAppointment(appId, title, description, location, type, beginDateTime, endDateTime, custId, userId, contId);
-
-                Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("appointment-view.fxml")));
-                Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                Scene scene = new Scene(root);
-                stage.setScene(scene);
-                stage.show();
+                modApptSaveBtn.setDisable(true);
+                AsyncDao.load(tasks, () -> {
+                    if (DateTimeFormat.checkApptOverlap(beginDateTime, endDateTime, custId, appId)) {
+                        return "Overlapping appointment times detected.";
+                    }
+                    if (AppointmentIndex.contactOverlap(beginDateTime, endDateTime, contId, appId)) {
+                        return "The contact already has an appointment at this time.";
+                    }
+                    AppointmentsDao.ModifyAppointment(appId, title, description, location, type, beginDateTime, endDateTime, custId, userId, contId);
+                    return null;
+                }, overlap -> {
+                    modApptSaveBtn.setDisable(false);
+                    try {
+                        if (overlap != null) {
+                            errorMessage.performAction(overlap);
+                            return;
+                        }
+                        tasks.cancelAll();
+                        ViewRegistry.show(event, "appointment-view.fxml");
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }, throwable -> {
+                    modApptSaveBtn.setDisable(false);
+                    throwable.printStackTrace();
+                });
             }
-        } catch (IOException | SQLException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Lists the business hours slots of a date in a time choice box, read from the slot times cached by {@link BusinessCalendar}, keeping the time already chosen.
+     * @param choice The start or end time choice box.
+     * @param date The date picked for it.
+     */
+    private static void showSlots(ChoiceBox<LocalTime> choice, LocalDate date) {
+        LocalTime selected = choice.getValue();
+        choice.getItems().setAll(date == null ? List.of() : BusinessCalendar.slots(date));
+        choice.setValue(selected);
+    }
+
     /**
      * Prompts the user to confirm cancellation.
      * If confirmed, discards any changes and returns to the main appointment view without saving the updates.
@@ -164,11 +205,8 @@ public class ModAppointmentController implements Initializable {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Confirm cancellation. \nChanges will not be saved to the database.");
         Optional<ButtonType> canceling = alert.showAndWait();
         if (canceling.isPresent() && canceling.get() == ButtonType.OK) {
-            Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("appointment-view.fxml")));
-            Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root);
-            stage.setScene(scene);
-            stage.show();
+            tasks.cancelAll();
+            ViewRegistry.show(event, "appointment-view.fxml");
         }
     }
 
@@ -1,31 +1,23 @@
 package c195.Controllers;
 
-import c195.DAO.CountriesDao;
 import c195.DAO.CustomersDao;
-import c195.DAO.FirstLevelDivisionsDao;
+import c195.DAO.ReferenceData;
 import c195.Helper.GenericInterface;
+import c195.Helper.Refreshable;
+import c195.Helper.ViewRegistry;
 import c195.Model.Customers;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
-import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.net.URL;
 import java.sql.SQLException;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.ResourceBundle;
 
 /**
  * This class allows for editing the customer's information.
  * This class handles loading the selected customer's data into the form, validating user inputs, and saving the updated customer details to the database.
  */
-public class ModCustomerController implements Initializable {
+public class ModCustomerController implements Refreshable {
     public TextField custIdTxt;
     public TextField custFirstNameTxt;
     public TextField custLastNameTxt;
@@ -39,14 +31,13 @@ public class ModCustomerController implements Initializable {
     private Customers customerSelected = null;
 
     /**
-     * Sets up the country combo box with available countries.
-     * @param url The location used to resolve relative paths for the root object.
-     * @param resourceBundle The resources used to localize the root object.
+     * Sets up the country combo box with available countries from the cached reference data.
+     * Called each time the view is shown, before the customer to edit is loaded by {@link #custFormInfo(Customers)}.
      */
     @Override
-    public void initialize(URL url, ResourceBundle resourceBundle) {
+    public void refresh() {
         try {
-            countryCombo.getItems().addAll(CountriesDao.countries());
+            countryCombo.getItems().setAll(ReferenceData.countries());
         } catch (SQLException throwable) {
             throwable.printStackTrace();
         }
@@ -62,12 +53,13 @@ public class ModCustomerController implements Initializable {
         divisionCombo.getItems().clear();
         countryCombo.getSelectionModel().getSelectedItem();
         String countryName = String.valueOf(countryCombo.getSelectionModel().getSelectedItem());
-        int countryId = CountriesDao.countriesId(countryName);
-        divisionCombo.getItems().addAll(FirstLevelDivisionsDao.firstLvlDivisions(countryId));
+        int countryId = ReferenceData.countryId(countryName);
+        divisionCombo.getItems().addAll(ReferenceData.divisions(countryId));
     }
 
     /**
      * Loads the selected customer's data into the UI components for editing.
+     * The country and division names are looked up in the cached reference data.
      * @param customers The customer data to load into the form for editing.
      * @throws SQLException If there is a database access error.
      */
@@ -85,11 +77,10 @@ public class ModCustomerController implements Initializable {
         addressTxt.setText(String.valueOf(customerSelected.getAddress()));
         postCodeTxt.setText(String.valueOf(customerSelected.getZipcode()));
         phoneNumberTxt.setText(String.valueOf(customerSelected.getPhoneNum()));
-        countryCombo.getSelectionModel().select(CountriesDao.countriesName(FirstLevelDivisionsDao.countryIdByDivision(customerSelected.getDivId())));
-        divisionCombo.getSelectionModel().select(FirstLevelDivisionsDao.firstDivisionName(customerSelected.getDivId()));
-        String countriesName = String.valueOf(countryCombo.getSelectionModel().getSelectedItem());
-        int countriesId = CountriesDao.countriesId(countriesName);
-        divisionCombo.getItems().addAll(FirstLevelDivisionsDao.firstLvlDivisions(countriesId));
+        int countriesId = ReferenceData.countryIdOfDivision(customerSelected.getDivId());
+        countryCombo.getSelectionModel().select(ReferenceData.countryName(countriesId));
+        divisionCombo.getItems().setAll(ReferenceData.divisions(countriesId));
+        divisionCombo.getSelectionModel().select(ReferenceData.divisionName(customerSelected.getDivId()));
     }
 
     /**
@@ -125,15 +116,11 @@ public class ModCustomerController implements Initializable {
                 String address = addressTxt.getText();
                 String postCode = postCodeTxt.getText();
                 String phoneNum = phoneNumberTxt.getText();
-                int divId = FirstLevelDivisionsDao.firstDivisionId(String.valueOf(divisionCombo.getValue()));
+                int divId = ReferenceData.divisionId(String.valueOf(divisionCombo.getValue()));
 
                 CustomersDao.ModifyCustomer(custId, custName, address, postCode, phoneNum, divId);
 
-                Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("customer-view.fxml")));
-                Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                Scene scene = new Scene(root);
-                stage.setScene(scene);
-                stage.show();
+                ViewRegistry.show(event, "customer-view.fxml");
             }
         } catch (SQLException | IOException exception) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
@@ -152,11 +139,7 @@ public class ModCustomerController implements Initializable {
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Changes to customer will not be saved.");
         Optional<ButtonType> canceling = alert.showAndWait();
         if (canceling.isPresent() && canceling.get() == ButtonType.OK) {
-            Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("customer-view.fxml")));
-            Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root);
-            stage.setScene(scene);
-            stage.show();
+            ViewRegistry.show(event, "customer-view.fxml");
         }
     }
 
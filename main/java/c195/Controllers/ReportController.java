@@ -1,46 +1,59 @@
 package c195.Controllers;
 
-import c195.DAO.AppointmentsDao;
-import c195.DAO.ContactsDao;
-import c195.DAO.CountriesDao;
-import c195.DAO.FirstLevelDivisionsDao;
+import c195.DAO.AppointmentStore;
+import c195.DAO.AsyncDao;
+import c195.DAO.ReferenceData;
+import c195.DAO.ReportsDao;
+import c195.Helper.CellValues;
+import c195.Helper.DateTimeFormat;
+import c195.Helper.LoginLog;
+import c195.Helper.LoginLogReader;
+import c195.Helper.Refreshable;
+import c195.Helper.TaskGroup;
+import c195.Helper.ViewRegistry;
 import c195.Model.Appointments;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
-import java.util.InvalidPropertiesFormatException;
-import java.util.Objects;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller class for generating reports.
  * This class handles different report generation.
  * It also allows for navigation back to the appointments and customers views.
  */
-public class ReportController implements Initializable {
+public class ReportController implements Initializable, Refreshable {
     public TableView<Appointments> scheduleTableview;
     public TableColumn<Appointments, Integer> apptIdScheduleColumn;
     public TableColumn<Appointments, String> titleScheduleColumn;
     public TableColumn<Appointments, String> typeScheduleColumn;
     public TableColumn<Appointments, String> descriptionScheduleColumn;
-    public TableColumn<Appointments, String> startScheduleColumn;
-    public TableColumn<Appointments, String> endScheduleColumn;
+    public TableColumn<Appointments, LocalDateTime> startScheduleColumn;
+    public TableColumn<Appointments, LocalDateTime> endScheduleColumn;
     public TableColumn<Appointments, Integer> custIdScheduleColumn;
     public ListView<String> divisionList;
     public TextArea trackerTxtArea;
+    public TextField loginUserTxt;
+    public DatePicker loginFromDate;
+    public DatePicker loginToDate;
+    public Button loginFilterBtn;
+    public Button loginOlderBtn;
     public ComboBox<Integer> contactCombo;
     public ComboBox<String> countryCombo;
     public ComboBox<String> monthCombo;
@@ -49,89 +62,259 @@ public class ReportController implements Initializable {
     public Button reportsCustomersBtn;
     public Button reportsExitBtn;
     public Label totalLbl;
+    public Label countryTotalLbl;
+    public Label contactMinutesLbl;
+    private final TaskGroup tasks = new TaskGroup();
+    private final FilteredList<Appointments> contactAppointments = new FilteredList<>(AppointmentStore.appointments(), appointment -> false);
+    private final SortedList<Appointments> sortedContactAppointments = new SortedList<>(contactAppointments);
+    private Node schedulePlaceholder;
+    private static final int loginPageSize = Math.max(1, Integer.getInteger("c195.loginLog.pageSize", 200));
+    private LoginLogReader.Page loginPage;
+    private ReportsDao.Figures figures;
+    private String divisionsCountry;
+    private int divisionsCountryId;
+    private Map<String, Integer> divisionIds = new LinkedHashMap<>();
     private final String[] months = {"JANUARY", "FEBRUARY", "MARCH", "APRIL", "MAY", "JUNE", "JULY", "AUGUST", "SEPTEMBER", "OCTOBER", "NOVEMBER", "DECEMBER"};
 
     /**
-     * Populates the text area with login activity, fills combo boxes with data from the database, and initializes the month combo box with month names.
+     * Initializes the month combo box with month names and binds the schedule columns to the appointment getters. The rest of the view is filled by {@link #refresh()} each time it is shown.
+     * The schedule shows the cached appointments of {@link AppointmentStore} filtered by contact, so appointments saved on any view or client appear in it without a reload.
      * @param url The location used to resolve relative paths for the root object.
      * @param resourceBundle The resources used to localize the root object.
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        try {
-            Scanner scan = new Scanner(new File("login_activity.txt"));
-            while (scan.hasNext()) {
-                if (scan.hasNextLine()) {
-                    trackerTxtArea.appendText(scan.nextLine() + "\n");
+        monthCombo.getItems().addAll(months);
+        CellValues.bind(apptIdScheduleColumn, Appointments::getAppId);
+        CellValues.bind(titleScheduleColumn, Appointments::getTitle);
+        CellValues.bind(typeScheduleColumn, Appointments::getType);
+        CellValues.bind(descriptionScheduleColumn, Appointments::getDescription);
+        CellValues.bind(startScheduleColumn, Appointments::getBegin);
+        CellValues.bind(endScheduleColumn, Appointments::getEnd);
+        CellValues.bind(custIdScheduleColumn, Appointments::getCustId);
+        sortedContactAppointments.comparatorProperty().bind(scheduleTableview.comparatorProperty());
+        scheduleTableview.setItems(sortedContactAppointments);
+        schedulePlaceholder = scheduleTableview.getPlaceholder();
+    }
+
+    /**
+     * Populates the text area with the latest page of login activity and fills the country and contact combo boxes, both in the background,
+     * loads the appointment cache behind the schedule on the first visit, and reloads the report figures in the background, so appointments saved since the last visit are counted.
+     */
+    @Override
+    public void refresh() {
+        loadLoginActivity();
+        if (countryCombo.getItems().isEmpty()) {
+            AsyncDao.load(tasks, ReferenceData::countries, countries -> countryCombo.getItems().setAll(countries));
+        }
+        if (contactCombo.getItems().isEmpty()) {
+            AsyncDao.load(tasks, ReferenceData::contactIds, contacts -> contactCombo.getItems().setAll(contacts));
+        }
+        loadFigures();
+        CompletableFuture<Void> load = AppointmentStore.load();
+        if (!load.isDone()) {
+            scheduleTableview.setPlaceholder(new Label("Loading..."));
+            load.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    scheduleTableview.setPlaceholder(schedulePlaceholder);
                 } else {
-                    trackerTxtArea.appendText(scan.next() + "");
+                    throwable.printStackTrace();
+                    scheduleTableview.setPlaceholder(new Label("Unable to load data."));
                 }
+            });
+        }
+    }
+
+    /**
+     * Computes the report figures in the background and shows the totals already selected from them once they are ready.
+     * The figures are cached by {@link ReportsDao} and {@link c195.DAO.ReportEngine} until the data changes, so this only costs a pass over the snapshot after a change.
+     */
+    private void loadFigures() {
+        AsyncDao.load(tasks, ReportsDao::figures, loaded -> {
+            figures = loaded;
+            showMonthTypes();
+            showDivisionCounts();
+            showContactMinutes();
+        }, Throwable::printStackTrace);
+    }
+
+    /**
+     * Fills the type combo box for the selected month from the loaded figures, keeping the selected type, and shows its total.
+     */
+    private void showMonthTypes() {
+        String month = monthCombo.getValue();
+        String type = typeCombo.getValue();
+        if (figures == null || month == null) {
+            return;
+        }
+        typeCombo.getItems().setAll(figures.types(month));
+        typeCombo.setValue(type);
+        totalLbl.setText(type == null ? "" : String.valueOf(figures.count(month, type)));
+    }
+
+    /**
+     * Shows the latest login activity matching the user name and dates entered above the text area.
+     * @param event The event triggered by clicking the Filter button.
+     */
+    public void OnLoginFilterBtn(ActionEvent event) {
+        loadLoginActivity();
+    }
+
+    /**
+     * Adds the page of login activity before the one shown to the top of the text area.
+     * @param event The event triggered by clicking the Older button.
+     */
+    public void OnLoginOlderBtn(ActionEvent event) {
+        LoginLogReader.Page page = loginPage;
+        if (page == null || !page.hasOlder()) {
+            return;
+        }
+        loginOlderBtn.setDisable(true);
+        AsyncDao.load(tasks, () -> {
+            try {
+                return LoginLogReader.older(page, loginPageSize);
+            } catch (IOException e) {
+                throw new SQLException(e.getMessage(), e);
             }
-            countryCombo.getItems().addAll(CountriesDao.countries());
-            contactCombo.getItems().addAll(ContactsDao.contId());
-            monthCombo.getItems().addAll(months);
-        } catch (SQLException | FileNotFoundException throwable) {
-            throwable.printStackTrace();
+        }, older -> {
+            loginPage = older;
+            trackerTxtArea.insertText(0, lines(older));
+            loginOlderBtn.setDisable(!older.hasOlder());
+        }, this::loginActivityError);
+    }
+
+    /**
+     * Reads the newest page of login activity matching the filter in the background, waiting briefly for lines still being written, and shows it in the text area.
+     */
+    private void loadLoginActivity() {
+        String user = loginUserTxt.getText();
+        LocalDate fromDate = loginFromDate.getValue();
+        LocalDate toDate = loginToDate.getValue();
+        LocalDateTime from = fromDate == null ? null : fromDate.atStartOfDay();
+        LocalDateTime to = toDate == null ? null : toDate.atTime(LocalTime.MAX);
+        loginPage = null;
+        loginOlderBtn.setDisable(true);
+        AsyncDao.load(tasks, () -> {
+            try {
+                LoginLog.flush(1000L);
+                return LoginLogReader.tail(user, from, to, loginPageSize);
+            } catch (IOException e) {
+                throw new SQLException(e.getMessage(), e);
+            }
+        }, page -> {
+            loginPage = page;
+            trackerTxtArea.setText(lines(page));
+            trackerTxtArea.end();
+            loginOlderBtn.setDisable(!page.hasOlder());
+        }, this::loginActivityError);
+    }
+
+    private void loginActivityError(Throwable throwable) {
+        trackerTxtArea.setText("Login Log Error: " + throwable.getMessage());
+    }
+
+    private static String lines(LoginLogReader.Page page) {
+        StringBuilder text = new StringBuilder();
+        for (String line : page.getLines()) {
+            text.append(line).append('\n');
         }
+        return text.toString();
     }
 
     /**
      * Handles selection changes in the contact combo box.
-     * Populates the schedule table view with appointments corresponding to the selected contact.
+     * Filters the schedule table view to the cached appointments of the selected contact, without a database query,
+     * and shows the minutes booked for the contact this week from the loaded report figures.
      * @param event The event triggered by selecting an item in the contact combo box.
      */
     public void OnContactCombo(ActionEvent event) {
-        try {
-            scheduleTableview.setItems(AppointmentsDao.selectAppsByCont(contactCombo.getValue()));
-
-            apptIdScheduleColumn.setCellValueFactory(new PropertyValueFactory<>("appId"));
-            titleScheduleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-            typeScheduleColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-            descriptionScheduleColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
-            startScheduleColumn.setCellValueFactory(new PropertyValueFactory<>("begin"));
-            endScheduleColumn.setCellValueFactory(new PropertyValueFactory<>("end"));
-            custIdScheduleColumn.setCellValueFactory(new PropertyValueFactory<>("custId"));
-        } catch (SQLException throwable) {
-            throwable.printStackTrace();
+        Integer contId = contactCombo.getValue();
+        if (contId == null) {
+            return;
+        }
+        contactAppointments.setPredicate(appointment -> appointment.getContId() == contId);
+        showContactMinutes();
+    }
+
+    private void showContactMinutes() {
+        Integer contId = contactCombo.getValue();
+        if (figures == null || contId == null) {
+            return;
         }
+        long minutes = figures.contactMinutes(contId, DateTimeFormat.startOfWeek().toLocalDate());
+        contactMinutesLbl.setText("Minutes booked this week: " + minutes);
     }
 
     /**
      * Handles selection changes in the country combo box.
-     * Populates the division list with first-level divisions corresponding to the selected country.
+     * Reads the first-level divisions of the selected country and their IDs from the reference data in the background,
+     * then populates the division list with the number of appointments of each division and shows the total of the country, from the loaded report figures.
      * @param event The event triggered by selecting an item in the country combo box.
-     * @throws SQLException If a database access error occurs.
      */
-    public void OnCountryCombo(ActionEvent event) throws SQLException {
+    public void OnCountryCombo(ActionEvent event) {
         divisionList.getItems().clear();
-        int countryId = CountriesDao.countriesId(countryCombo.getSelectionModel().getSelectedItem());
-        divisionList.getItems().addAll(FirstLevelDivisionsDao.firstLvlDivisions(countryId));
+        countryTotalLbl.setText("");
+        String country = countryCombo.getSelectionModel().getSelectedItem();
+        if (country == null) {
+            return;
+        }
+        loadCountryCounts(country);
+    }
+
+    private void loadCountryCounts(String country) {
+        AsyncDao.load(tasks, () -> {
+            int countryId = ReferenceData.countryId(country);
+            Map<String, Integer> ids = new LinkedHashMap<>();
+            for (String division : ReferenceData.divisions(countryId)) {
+                ids.put(division, ReferenceData.divisionId(division));
+            }
+            return Map.entry(countryId, ids);
+        }, divisions -> {
+            if (country.equals(countryCombo.getValue())) {
+                divisionsCountry = country;
+                divisionsCountryId = divisions.getKey();
+                divisionIds = divisions.getValue();
+                showDivisionCounts();
+            }
+        });
+    }
+
+    private void showDivisionCounts() {
+        if (divisionsCountry == null || !divisionsCountry.equals(countryCombo.getValue())) {
+            return;
+        }
+        if (figures == null) {
+            divisionList.getItems().setAll(divisionIds.keySet());
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        divisionIds.forEach((division, divId) -> lines.add(division + " (" + figures.divisionCount(divId) + ")"));
+        divisionList.getItems().setAll(lines);
+        countryTotalLbl.setText(figures.countryCount(divisionsCountryId) + " appointments");
     }
 
     /**
      * Handles selection changes in the month combo box.
-     * Clears and populates the type combo box with appointment types for the selected month.
+     * Clears and populates the type combo box with appointment types for the selected month, read from the report figures loaded in the background.
      * @param event The event triggered by selecting an item in the month combo box.
-     * @throws SQLException If a database access error occurs.
      */
-    public void OnMonthCombo(ActionEvent event) throws SQLException {
+    public void OnMonthCombo(ActionEvent event) {
         typeCombo.getItems().clear();
-        monthCombo.getSelectionModel().getSelectedItem();
-        String month = monthCombo.getSelectionModel().getSelectedItem();
-        typeCombo.getItems().addAll(AppointmentsDao.type(month));
+        totalLbl.setText("");
+        showMonthTypes();
     }
 
     /**
      * Handles selection changes in the type combo box.
-     * Updates the total label with the count of appointments matching the selected month and type.
+     * Updates the total label with the count of appointments matching the selected month and type, read from the report figures loaded in the background.
      * @param event The event triggered by selecting an item in the type combo box.
-     * @throws SQLException If a database access error occurs.
      */
-    public void OnTypeCombo(ActionEvent event) throws SQLException {
-        typeCombo.getSelectionModel().getSelectedItem();
-        String month = monthCombo.getSelectionModel().getSelectedItem();
-        String type = typeCombo.getSelectionModel().getSelectedItem();
-        totalLbl.setText(String.valueOf(AppointmentsDao.appsByMonthType(month, type)));
+    public void OnTypeCombo(ActionEvent event) {
+        String month = monthCombo.getValue();
+        String type = typeCombo.getValue();
+        if (figures != null && month != null && type != null) {
+            totalLbl.setText(String.valueOf(figures.count(month, type)));
+        }
     }
 
     /**
@@ -140,11 +323,8 @@ public class ReportController implements Initializable {
      * @throws IOException If an I/O error occurs during view loading.
      */
     public void OnReportsApptsBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("appointment-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "appointment-view.fxml");
     }
 
     /**
@@ -153,11 +333,8 @@ public class ReportController implements Initializable {
      * @throws IOException If an I/O error occurs during view loading.
      */
     public void OnReportsCustomersBtn(ActionEvent event) throws IOException {
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("customer-view.fxml")));
-        Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root);
-        stage.setScene(scene);
-        stage.show();
+        tasks.cancelAll();
+        ViewRegistry.show(event, "customer-view.fxml");
     }
 
     /**
@@ -165,6 +342,7 @@ public class ReportController implements Initializable {
      * @param event The event triggered by clicking the Reports Exit button.
      */
     public void OnReportsExitBtn(ActionEvent event) {
+        tasks.cancelAll();
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
         stage.close();
     }
@@ -0,0 +1,391 @@
+package c195.DAO;
+
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * This class is a read-only, column-oriented snapshot of the appointments for the reports.
+ * Each field the reports need is held in its own primitive array, one entry per appointment: the appointment, customer and contact IDs as ints,
+ * the start and end times as long seconds, and the type as an int code into a dictionary of the distinct types, which repeat across thousands of appointments.
+ * An appointment then takes about 32 bytes instead of the hundreds held by an {@link Appointments} object with its strings and date-times,
+ * and a report is a sequential scan of a few arrays instead of a walk over scattered objects, as done by {@link ReportEngine}.
+ * The rows are ordered by start time, so a scan meets the appointments of each month and week together.
+ * <p>
+ * The snapshot is read with one query on first use. Changes published on the {@link EventBus} are collected and merged into a new snapshot on the next call to {@link #current()},
+ * by one pass over the previous columns, so a change does not read the table again; a snapshot already handed out never changes.
+ * The snapshot is optional: when the {@code c195.reports.columnar} system property is false it is never built, and {@link ReportsDao} computes every report figure in the database.
+ * </p>
+ */
+public final class AppointmentColumns {
+
+    private static final boolean enabled = Boolean.parseBoolean(System.getProperty("c195.reports.columnar", "true"));
+    private static final List<String> dictionary = new ArrayList<>();
+    private static final Map<String, Integer> codes = new HashMap<>();
+    private static final Map<Integer, Appointments> changed = new HashMap<>();
+    private static final Set<Integer> deletedCustomers = new HashSet<>();
+    private static AppointmentColumns current = null;
+
+    static {
+        EventBus.subscribe(Appointments.class, AppointmentColumns::onAppointments);
+        EventBus.subscribe(Customers.class, event -> {
+            if (event.getKind() == ChangeEvent.Kind.DELETED) {
+                removeCustomers(event.getIds());
+            }
+        });
+    }
+
+    private final int size;
+    private final int[] ids;
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] customerIds;
+    private final int[] contactIds;
+    private final int[] types;
+    private final String[] strings;
+
+    private AppointmentColumns(Builder builder) {
+        size = builder.size;
+        ids = Arrays.copyOf(builder.ids, size);
+        starts = Arrays.copyOf(builder.starts, size);
+        ends = Arrays.copyOf(builder.ends, size);
+        customerIds = Arrays.copyOf(builder.customerIds, size);
+        contactIds = Arrays.copyOf(builder.contactIds, size);
+        types = Arrays.copyOf(builder.types, size);
+        strings = dictionary.toArray(new String[0]);
+    }
+
+    /**
+     * Tells whether the reports are computed from the snapshot, as set by the {@code c195.reports.columnar} system property.
+     * @return true unless the property is false.
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the snapshot of the appointments as they are now, reading it on first use and merging in the changes published since the last call.
+     * @return The current snapshot, which is never changed afterwards.
+     * @throws SQLException If the snapshot has to be read and the query fails.
+     */
+    public static synchronized AppointmentColumns current() throws SQLException {
+        if (current == null) {
+            changed.clear();
+            deletedCustomers.clear();
+            current = read();
+        } else if (!changed.isEmpty() || !deletedCustomers.isEmpty()) {
+            current = current.merge();
+            changed.clear();
+            deletedCustomers.clear();
+        }
+        return current;
+    }
+
+    /**
+     * Discards the snapshot so the next call to {@link #current()} reads it again.
+     */
+    public static synchronized void invalidate() {
+        current = null;
+        changed.clear();
+        deletedCustomers.clear();
+        dictionary.clear();
+        codes.clear();
+    }
+
+    /**
+     * Returns the number of appointments in the snapshot.
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The start time of the row's appointment in seconds, as kept in the column, for scans that should not create a date-time per row.
+     */
+    public long startSeconds(int row) {
+        return starts[row];
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The end time of the row's appointment in seconds.
+     */
+    public long endSeconds(int row) {
+        return ends[row];
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The customer ID of the row's appointment.
+     */
+    public int customerId(int row) {
+        return customerIds[row];
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The contact ID of the row's appointment.
+     */
+    public int contactId(int row) {
+        return contactIds[row];
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The dictionary code of the row's type, for counting by type in an array.
+     */
+    public int typeCode(int row) {
+        return types[row];
+    }
+
+    /**
+     * Returns the number of distinct types in the dictionary, one more than the highest type code.
+     * @return The size of the dictionary.
+     */
+    public int dictionarySize() {
+        return strings.length;
+    }
+
+    /**
+     * @param code A type code.
+     * @return The type the code stands for.
+     */
+    public String string(int code) {
+        return strings[code];
+    }
+
+    /**
+     * Converts a start or end time to the seconds kept in the columns.
+     * @param dateTime The date and time.
+     * @return The date and time in seconds.
+     */
+    public static long seconds(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static synchronized void onAppointments(ChangeEvent<Appointments> event) {
+        if (current == null) {
+            return;
+        }
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                for (Appointments appointment : event.getEntities()) {
+                    changed.put(appointment.getAppId(), appointment);
+                }
+                break;
+            case DELETED:
+                for (int appId : event.getIds()) {
+                    changed.put(appId, null);
+                }
+                break;
+            default:
+                invalidate();
+        }
+    }
+
+    private static synchronized void removeCustomers(Collection<Integer> custIds) {
+        if (current != null) {
+            deletedCustomers.addAll(custIds);
+        }
+    }
+
+    /**
+     * Reads every appointment into a new snapshot, starting a new dictionary so types no appointment has any more are dropped.
+     */
+    private static AppointmentColumns read() throws SQLException {
+        dictionary.clear();
+        codes.clear();
+        String sql = "SELECT Appointment_ID, Start, End, Type, Customer_ID, Contact_ID FROM appointments ORDER BY Start, Appointment_ID";
+        Builder builder = JDBC.query(sql, result -> {
+            Builder rows = new Builder(1024);
+            while (result.next()) {
+                rows.add(result.getInt(1),
+                        seconds(result.getTimestamp(2).toLocalDateTime()),
+                        seconds(result.getTimestamp(3).toLocalDateTime()),
+                        code(result.getString(4)),
+                        result.getInt(5),
+                        result.getInt(6));
+            }
+            return rows;
+        });
+        builder.sortByStart();
+        return new AppointmentColumns(builder);
+    }
+
+    /**
+     * Builds the next snapshot: the rows of this one that were not changed or deleted, merged in start order with the saved appointments.
+     * The dictionary is rebuilt when most of its types are no longer used by any appointment.
+     */
+    private AppointmentColumns merge() {
+        List<Appointments> saved = new ArrayList<>();
+        for (Appointments appointment : changed.values()) {
+            if (appointment != null && !deletedCustomers.contains(appointment.getCustId())) {
+                saved.add(appointment);
+            }
+        }
+        saved.sort(Comparator.comparing(Appointments::getBegin).thenComparingInt(Appointments::getAppId));
+        long[] savedStarts = new long[saved.size()];
+        for (int i = 0; i < savedStarts.length; i++) {
+            savedStarts[i] = seconds(saved.get(i).getBegin());
+        }
+        int[] changedIds = sortedArray(changed.keySet());
+        int[] deleted = sortedArray(deletedCustomers);
+
+        Builder builder = new Builder(size + saved.size());
+        int next = 0;
+        for (int row = 0; row < size; row++) {
+            if (Arrays.binarySearch(changedIds, ids[row]) >= 0 || (deleted.length > 0 && Arrays.binarySearch(deleted, customerIds[row]) >= 0)) {
+                continue;
+            }
+            while (next < savedStarts.length && (savedStarts[next] < starts[row] || (savedStarts[next] == starts[row] && saved.get(next).getAppId() < ids[row]))) {
+                builder.add(saved.get(next++));
+            }
+            builder.add(ids[row], starts[row], ends[row], types[row], customerIds[row], contactIds[row]);
+        }
+        while (next < saved.size()) {
+            builder.add(saved.get(next++));
+        }
+        builder.compactDictionary();
+        return new AppointmentColumns(builder);
+    }
+
+    private static int[] sortedArray(Collection<Integer> values) {
+        int[] array = new int[values.size()];
+        int i = 0;
+        for (int value : values) {
+            array[i++] = value;
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static int code(String text) {
+        String value = text == null ? "" : text;
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Growable columns the snapshot is built in before they are trimmed to size.
+     */
+    private static class Builder {
+        private int size;
+        private int[] ids;
+        private long[] starts;
+        private long[] ends;
+        private int[] customerIds;
+        private int[] contactIds;
+        private int[] types;
+
+        private Builder(int capacity) {
+            int length = Math.max(16, capacity);
+            ids = new int[length];
+            starts = new long[length];
+            ends = new long[length];
+            customerIds = new int[length];
+            contactIds = new int[length];
+            types = new int[length];
+        }
+
+        private void add(Appointments appointment) {
+            add(appointment.getAppId(), seconds(appointment.getBegin()), seconds(appointment.getEnd()),
+                    code(appointment.getType()), appointment.getCustId(), appointment.getContId());
+        }
+
+        private void add(int id, long start, long end, int type, int customerId, int contactId) {
+            if (size == ids.length) {
+                int length = size * 2;
+                ids = Arrays.copyOf(ids, length);
+                starts = Arrays.copyOf(starts, length);
+                ends = Arrays.copyOf(ends, length);
+                customerIds = Arrays.copyOf(customerIds, length);
+                contactIds = Arrays.copyOf(contactIds, length);
+                types = Arrays.copyOf(types, length);
+            }
+            ids[size] = id;
+            starts[size] = start;
+            ends[size] = end;
+            customerIds[size] = customerId;
+            contactIds[size] = contactId;
+            types[size] = type;
+            size++;
+        }
+
+        /**
+         * Gives the types still in use new codes from 0 when fewer than half of the dictionary's types are, so removed types do not stay in every later snapshot.
+         * Snapshots already handed out keep their own copy of the dictionary.
+         */
+        private void compactDictionary() {
+            boolean[] used = new boolean[dictionary.size()];
+            int inUse = 0;
+            for (int row = 0; row < size; row++) {
+                if (!used[types[row]]) {
+                    used[types[row]] = true;
+                    inUse++;
+                }
+            }
+            if (inUse * 2 >= used.length) {
+                return;
+            }
+            int[] remap = new int[used.length];
+            List<String> kept = new ArrayList<>(inUse);
+            for (int code = 0; code < used.length; code++) {
+                if (used[code]) {
+                    remap[code] = kept.size();
+                    kept.add(dictionary.get(code));
+                }
+            }
+            dictionary.clear();
+            codes.clear();
+            for (String type : kept) {
+                code(type);
+            }
+            for (int row = 0; row < size; row++) {
+                types[row] = remap[types[row]];
+            }
+        }
+
+        /**
+         * Puts the rows in start order if the database did not already, as when converting to local time repeats an hour at the end of daylight saving time.
+         */
+        private void sortByStart() {
+            boolean sorted = true;
+            for (int row = 1; row < size && sorted; row++) {
+                sorted = starts[row - 1] < starts[row] || (starts[row - 1] == starts[row] && ids[row - 1] <= ids[row]);
+            }
+            if (sorted) {
+                return;
+            }
+            Integer[] order = new Integer[size];
+            for (int row = 0; row < size; row++) {
+                order[row] = row;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingLong(row -> starts[row]).thenComparingInt(row -> ids[row]));
+            Builder sortedRows = new Builder(size);
+            for (int row : order) {
+                sortedRows.add(ids[row], starts[row], ends[row], types[row], customerIds[row], contactIds[row]);
+            }
+            size = sortedRows.size;
+            ids = sortedRows.ids;
+            starts = sortedRows.starts;
+            ends = sortedRows.ends;
+            customerIds = sortedRows.customerIds;
+            contactIds = sortedRows.contactIds;
+            types = sortedRows.types;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package c195.DAO;
+
+import c195.Helper.AppointmentIndex;
+import c195.Helper.CsvReader;
+import c195.Helper.BusinessCalendar;
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
+import c195.Model.Appointments;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * This abstract class imports appointments in bulk from a CSV file, for schedules migrated from other systems.
+ * The file is read one record at a time and processed in chunks, which defaults to 1000 rows and can be set with the {@code c195.import.chunkSize} system property.
+ * Each row is checked for missing fields, unknown customers, users and contacts, business hours and overlaps with the other appointments of its customer and of its contact,
+ * as the appointment forms check them, both those already saved and those earlier in the file, and each chunk of valid rows is inserted as one JDBC batch in its own transaction.
+ * The appointments of each saved chunk are published as one created event on the {@link EventBus}.
+ * Rejected rows are written to a report next to the file with the reason they were rejected.
+ * <p>
+ * The file must start with a header naming the columns Title, Description, Location, Type, Start, End, Customer_ID, User_ID and Contact_ID, in any order.
+ * Start and End are local times written as yyyy-MM-dd HH:mm.
+ * </p>
+ */
+public abstract class AppointmentImporter {
+
+    private static final int chunkSize = Math.max(1, Integer.getInteger("c195.import.chunkSize", 1000));
+    private static final String[] columns = {"Title", "Description", "Location", "Type", "Start", "End", "Customer_ID", "User_ID", "Contact_ID"};
+    private static final DateTimeFormatter dateTimeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd[ ]['T']HH:mm[:ss]");
+
+    /**
+     * Imports the appointments of a CSV file.
+     * Valid rows are saved even if other rows are rejected.
+     * @param file The CSV file to import.
+     * @return The number of rows imported and rejected, and the location of the reject report.
+     * @throws IOException If the file cannot be read, has no header or lacks a column, or the report cannot be written.
+     * @throws SQLException If the customers, users and contacts to validate against cannot be loaded.
+     */
+    public static Result importCsv(Path file) throws IOException, SQLException {
+        Set<Integer> customers = new HashSet<>(ReferenceData.customerIds());
+        Set<Integer> users = new HashSet<>(ReferenceData.userIds());
+        Set<Integer> contacts = new HashSet<>(ReferenceData.contactIds());
+        Result result = new Result(file.resolveSibling(file.getFileName() + ".rejects.csv"));
+
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            List<String> names = reader.next();
+            int[] column = header(names);
+            result.header = names;
+            List<Row> chunk = new ArrayList<>();
+            List<String> fields;
+            while ((fields = reader.next()) != null) {
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    continue;
+                }
+                Row row = new Row(reader.lineNumber(), fields);
+                String reason = parse(row, column, customers, users, contacts);
+                if (reason != null) {
+                    result.reject(row, reason);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    save(chunk, result);
+                    chunk.clear();
+                }
+            }
+            save(chunk, result);
+        } finally {
+            result.closeReport();
+        }
+        return result;
+    }
+
+    private static int[] header(List<String> names) throws IOException {
+        if (names == null) {
+            throw new IOException("The file is empty.");
+        }
+        int[] column = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            column[i] = -1;
+            for (int j = 0; j < names.size(); j++) {
+                if (names.get(j).trim().equalsIgnoreCase(columns[i])) {
+                    column[i] = j;
+                }
+            }
+            if (column[i] < 0) {
+                throw new IOException("The file has no " + columns[i] + " column.");
+            }
+        }
+        return column;
+    }
+
+    private static String parse(Row row, int[] column, Set<Integer> customers, Set<Integer> users, Set<Integer> contacts) {
+        String[] value = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (column[i] >= row.fields.size() || row.fields.get(column[i]).isBlank()) {
+                return "Missing " + columns[i];
+            }
+            value[i] = row.fields.get(column[i]).trim();
+        }
+
+        LocalDateTime begin;
+        LocalDateTime end;
+        try {
+            begin = LocalDateTime.parse(value[4], dateTimeFormat);
+            end = LocalDateTime.parse(value[5], dateTimeFormat);
+        } catch (DateTimeParseException e) {
+            return "Start and End must be written as yyyy-MM-dd HH:mm";
+        }
+        if (!end.isAfter(begin)) {
+            return "Start must occur before End";
+        }
+        if (!BusinessCalendar.withinBusinessHours(begin, end)) {
+            return "Outside business hours (8:00 to 22:00 Eastern Time) or on a closure date";
+        }
+
+        int custId;
+        int userId;
+        int contId;
+        try {
+            custId = Integer.parseInt(value[6]);
+            userId = Integer.parseInt(value[7]);
+            contId = Integer.parseInt(value[8]);
+        } catch (NumberFormatException e) {
+            return "Customer_ID, User_ID and Contact_ID must be numbers";
+        }
+        if (!customers.contains(custId)) {
+            return "Unknown customer " + custId;
+        }
+        if (!users.contains(userId)) {
+            return "Unknown user " + userId;
+        }
+        if (!contacts.contains(contId)) {
+            return "Unknown contact " + contId;
+        }
+
+        row.appointment = new Appointments(0, value[0], value[1], value[2], value[3], begin, end, custId, userId, contId);
+        return null;
+    }
+
+    /**
+     * Rejects the rows of a chunk that overlap another appointment of the same customer or contact and inserts the rest.
+     * The rows are swept in start order: a row is accepted only if it starts after the last accepted row of its customer and of its contact ends
+     * and the saved appointments of both, including those of earlier chunks, do not overlap it.
+     * Rows the database returned no ID for are reported as rejected, as they cannot be told apart from rows that were not saved.
+     */
+    private static void save(List<Row> chunk, Result result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Row> rows = new ArrayList<>(chunk);
+        rows.sort(Comparator.comparing((Row row) -> row.appointment.getBegin()).thenComparingInt(row -> row.line));
+
+        List<Row> accepted = new ArrayList<>();
+        int swept = 0;
+        try {
+            Map<Integer, Row> lastOfCustomer = new HashMap<>();
+            Map<Integer, Row> lastOfContact = new HashMap<>();
+            for (; swept < rows.size(); swept++) {
+                Row row = rows.get(swept);
+                Appointments appointment = row.appointment;
+                Row customerLast = lastOfCustomer.get(appointment.getCustId());
+                Row contactLast = lastOfContact.get(appointment.getContId());
+                if (customerLast != null && overlaps(customerLast.appointment, appointment)) {
+                    result.reject(row, "Overlaps the appointment on line " + customerLast.line);
+                } else if (contactLast != null && overlaps(contactLast.appointment, appointment)) {
+                    result.reject(row, "Overlaps the appointment of contact " + appointment.getContId() + " on line " + contactLast.line);
+                } else if (AppointmentIndex.customerOverlap(appointment.getBegin(), appointment.getEnd(), appointment.getCustId(), -1)) {
+                    result.reject(row, "Overlaps an existing appointment of customer " + appointment.getCustId());
+                } else if (AppointmentIndex.contactOverlap(appointment.getBegin(), appointment.getEnd(), appointment.getContId(), -1)) {
+                    result.reject(row, "Overlaps an existing appointment of contact " + appointment.getContId());
+                } else {
+                    accepted.add(row);
+                    lastOfCustomer.put(appointment.getCustId(), row);
+                    lastOfContact.put(appointment.getContId(), row);
+                }
+            }
+            List<Appointments> inserted = insert(accepted);
+            if (!inserted.isEmpty()) {
+                EventBus.publish(ChangeEvent.created(Appointments.class, inserted));
+            }
+            if (inserted.size() != accepted.size()) {
+                EventBus.publish(ChangeEvent.invalidated(Appointments.class));
+                for (Row row : accepted.subList(inserted.size(), accepted.size())) {
+                    result.reject(row, "No ID was returned for this row; check whether it was saved before importing it again");
+                }
+            }
+            result.imported += inserted.size();
+        } catch (SQLException e) {
+            for (Row row : accepted) {
+                result.reject(row, "Database error: " + e.getMessage());
+            }
+            for (Row row : rows.subList(swept, rows.size())) {
+                result.reject(row, "Database error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean overlaps(Appointments earlier, Appointments later) {
+        return earlier.getBegin().equals(later.getBegin()) || earlier.getEnd().equals(later.getEnd()) || earlier.getEnd().isAfter(later.getBegin());
+    }
+
+    private static List<Appointments> insert(List<Row> rows) throws SQLException {
+        String sql = "INSERT INTO appointments (Title, Description, Location, Type, Start, End, Customer_ID, User_ID, Contact_ID, Last_Update) VALUES(?,?,?,?,?,?,?,?,?,NOW())";
+        return JDBC.transaction(connection -> {
+            List<Appointments> inserted = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Row row : rows) {
+                    Appointments appointment = row.appointment;
+                    statement.setString(1, appointment.getTitle());
+                    statement.setString(2, appointment.getDescription());
+                    statement.setString(3, appointment.getLocation());
+                    statement.setString(4, appointment.getType());
+                    statement.setTimestamp(5, Timestamp.valueOf(appointment.getBegin()));
+                    statement.setTimestamp(6, Timestamp.valueOf(appointment.getEnd()));
+                    statement.setInt(7, appointment.getCustId());
+                    statement.setInt(8, appointment.getUserId());
+                    statement.setInt(9, appointment.getContId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < rows.size()) {
+                        Appointments appointment = rows.get(i++).appointment;
+                        inserted.add(new Appointments(keys.getInt(1), appointment.getTitle(), appointment.getDescription(), appointment.getLocation(), appointment.getType(),
+                                appointment.getBegin(), appointment.getEnd(), appointment.getCustId(), appointment.getUserId(), appointment.getContId()));
+                    }
+                }
+            }
+            return inserted;
+        });
+    }
+
+    /**
+     * One data row of the file, with the line it started on and the appointment parsed from it.
+     */
+    private static class Row {
+        private final int line;
+        private final List<String> fields;
+        private Appointments appointment;
+
+        private Row(int line, List<String> fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * The outcome of an import: how many rows were saved and rejected, and where the rejected rows were reported.
+     */
+    public static class Result {
+        private final Path reportPath;
+        private BufferedWriter report;
+        private List<String> header;
+        private int imported;
+        private int rejected;
+
+        private Result(Path reportPath) {
+            this.reportPath = reportPath;
+        }
+
+        /**
+         * Returns the number of appointments saved.
+         * @return The number of imported rows.
+         */
+        public int getImported() {
+            return imported;
+        }
+
+        /**
+         * Returns the number of rows rejected.
+         * @return The number of rejected rows.
+         */
+        public int getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns the location of the reject report, which lists each rejected row with its line number and reason.
+         * @return The path of the report, or null if no row was rejected.
+         */
+        public Path getRejectReport() {
+            return rejected > 0 ? reportPath : null;
+        }
+
+        private void reject(Row row, String reason) {
+            rejected++;
+            try {
+                if (report == null) {
+                    report = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8);
+                    StringBuilder names = new StringBuilder("Line,Reason");
+                    for (String name : header) {
+                        names.append(',').append(CsvReader.quote(name));
+                    }
+                    report.write(names.toString());
+                    report.newLine();
+                }
+                StringBuilder line = new StringBuilder().append(row.line).append(',').append(CsvReader.quote(reason));
+                for (String field : row.fields) {
+                    line.append(',').append(CsvReader.quote(field));
+                }
+                report.write(line.toString());
+                report.newLine();
+            } catch (IOException e) {
+                System.out.println("Reject Report Error: " + e.getMessage());
+            }
+        }
+
+        private void closeReport() throws IOException {
+            if (report != null) {
+                report.close();
+            }
+        }
+    }
+}
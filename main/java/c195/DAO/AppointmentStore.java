@@ -0,0 +1,103 @@
+package c195.DAO;
+
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+import javafx.collections.ObservableList;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * This abstract class keeps every appointment in memory for the appointment screen, in one observable list ordered by start time.
+ * The list is read once, a page at a time through the primary key, and is then kept up to date by the appointment and customer change events
+ * on the {@link EventBus}, published by the DAOs and by {@link DeltaSync}, instead of being queried again, so the screen's time filters are applied to the cached list without a database round trip.
+ * The start order makes the list a sorted start-time index, and filtered views of it are already in start order.
+ * Pages are 1000 rows by default and can be set with the {@code c195.store.pageSize} system property.
+ * The list itself is a {@link CachedTable}, which only changes it on the JavaFX application thread.
+ */
+public abstract class AppointmentStore {
+
+    private static final int pageSize = Math.max(1, Integer.getInteger("c195.store.pageSize", 1000));
+    private static final CachedTable<Appointments> table = new CachedTable<>(
+            Comparator.comparing(Appointments::getBegin).thenComparingInt(Appointments::getAppId), Appointments::getAppId, AppointmentStore::readAll);
+
+    static {
+        EventBus.subscribe(Appointments.class, AppointmentStore::onAppointments);
+        EventBus.subscribe(Customers.class, AppointmentStore::onCustomers);
+    }
+
+    /**
+     * Returns the cached appointments in start order, for wrapping in a FilteredList and SortedList.
+     * The list is empty until {@link #load()} completes. Must be used on the JavaFX application thread.
+     * @return A read-only view of the cached appointments.
+     */
+    public static ObservableList<Appointments> appointments() {
+        return table.rows();
+    }
+
+    /**
+     * Loads the appointments in the background if they are not cached yet. Must be called on the JavaFX application thread.
+     * @return A future completed on the JavaFX application thread once the list holds every appointment, or exceptionally if the load failed.
+     */
+    public static CompletableFuture<Void> load() {
+        return table.load();
+    }
+
+    /**
+     * Creates a filter matching the appointments starting within a time range.
+     * @param from The inclusive lower bound of the appointment start time.
+     * @param to The exclusive upper bound of the appointment start time.
+     * @return A predicate for a FilteredList of the cached appointments.
+     */
+    public static Predicate<Appointments> between(LocalDateTime from, LocalDateTime to) {
+        return appointment -> !appointment.getBegin().isBefore(from) && appointment.getBegin().isBefore(to);
+    }
+
+    /**
+     * Adds saved appointments to the list or moves modified ones to their new place, removes deleted ones, and reads the list again when the changes are not known one by one.
+     */
+    private static void onAppointments(ChangeEvent<Appointments> event) {
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                table.putAll(event.getEntities());
+                break;
+            case DELETED:
+                for (int appId : event.getIds()) {
+                    table.remove(appId);
+                }
+                break;
+            default:
+                table.invalidate();
+        }
+    }
+
+    /**
+     * Removes every appointment of deleted customers from the list.
+     */
+    private static void onCustomers(ChangeEvent<Customers> event) {
+        if (event.getKind() == ChangeEvent.Kind.DELETED) {
+            Set<Integer> customers = new HashSet<>(event.getIds());
+            table.removeIf(appointment -> customers.contains(appointment.getCustId()));
+        }
+    }
+
+    private static List<Appointments> readAll() throws SQLException {
+        List<Appointments> rows = new ArrayList<>();
+        int afterId = 0;
+        while (true) {
+            List<Appointments> page = AppointmentsDao.selectAppointmentsPage(afterId, pageSize);
+            rows.addAll(page);
+            if (page.size() < pageSize) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getAppId();
+        }
+        return rows;
+    }
+}
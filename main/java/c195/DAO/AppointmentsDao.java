@@ -1,89 +1,132 @@
 package c195.DAO;
 
+import c195.Helper.ChangeEvent;
+import c195.Helper.DateTimeFormat;
+import c195.Helper.EventBus;
+import c195.Helper.ReminderScheduler;
 import c195.Model.Appointments;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 /**
  * This abstract class serves as a data access object (DAO) for managing appointments in a database.
  * It provides various static methods to perform CRUD (Create, Read, Update, Delete) operations and queries related to appointments.
+ * Each saved change is published as a {@link ChangeEvent} on the {@link EventBus}, so the caches and open tables patch the changed row instead of reloading.
  */
 public abstract class AppointmentsDao {
 
     /**
-     * Checks for appointments starting within the next 15 minutes and generates an alert message.
+     * Checks for appointments starting within the next 15 minutes and generates an alert message about the earliest one.
+     * The range is compared directly against the Start column so the query can use the index on Start.
+     * Reminders for the rest of the session are shown by {@link ReminderScheduler}.
      * The message is localized based on the default locale settings, either English or French.
      * @return A message indicating the upcoming appointment details or a message stating no upcoming appointments.
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static String appointmentAlert() throws SQLException {
 
-        String sql = "SELECT * FROM appointments WHERE TIMESTAMP(Start) BETWEEN ? AND ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setObject(1, Instant.now());
-        statement.setObject(2, Instant.now().plus(15, ChronoUnit.MINUTES));
-        ResultSet set = statement.executeQuery();
-        if (set.next()) {
-            int appointmentId = set.getInt("Appointment_ID");
-            String start = set.getString("Start");
-            if (Locale.getDefault().getLanguage().equals("fr")) {
-                ResourceBundle bundle = ResourceBundle.getBundle("Lang", Locale.getDefault());
-                String result = String.format((bundle.getString("yesAppointment")) + ":\n" + (bundle.getString("appointmentID")) + ": " + appointmentId + "\n" + (bundle.getString("date&time")) + ": " + start);
-                return result;
+        String sql = "SELECT Appointment_ID, Start FROM appointments WHERE Start >= ? AND Start <= ? ORDER BY Start LIMIT 1";
+        LocalDateTime now = LocalDateTime.now();
+        return JDBC.query(sql, statement -> {
+            statement.setTimestamp(1, Timestamp.valueOf(now));
+            statement.setTimestamp(2, Timestamp.valueOf(now.plusMinutes(15)));
+        }, set -> {
+            if (set.next()) {
+                int appointmentId = set.getInt("Appointment_ID");
+                String start = set.getString("Start");
+                if (Locale.getDefault().getLanguage().equals("fr")) {
+                    ResourceBundle bundle = ResourceBundle.getBundle("Lang", Locale.getDefault());
+                    String result = String.format((bundle.getString("yesAppointment")) + ":\n" + (bundle.getString("appointmentID")) + ": " + appointmentId + "\n" + (bundle.getString("date&time")) + ": " + start);
+                    return result;
+                } else {
+                    String result = String.format("There is an appointment starting soon:\nAppointment ID: " + appointmentId + "\nDate & Time: " + start);
+                    return result;
+                }
             } else {
-                String result = String.format("There is an appointment starting soon:\nAppointment ID: " + appointmentId + "\nDate & Time: " + start);
-                return result;
+                if (Locale.getDefault().getLanguage().equals("fr")) {
+                    ResourceBundle bundle = ResourceBundle.getBundle("Lang", Locale.getDefault());
+                    String result = String.format(bundle.getString("noAppointment"));
+                    return result;
+                } else {
+                    String result = String.format("There are no pending appointments");
+                    return result;
+                }
             }
-        } else {
-            if (Locale.getDefault().getLanguage().equals("fr")) {
-                ResourceBundle bundle = ResourceBundle.getBundle("Lang", Locale.getDefault());
-                String result = String.format(bundle.getString("noAppointment"));
-                return result;
-            } else {
-                String result = String.format("There are no pending appointments");
-                return result;
-            }
-        }
+        });
     }
 
     private static ObservableList<Appointments> appointmentObservableList = FXCollections.observableArrayList();
 
+    /**
+     * Maps a row of the appointments table to an Appointments object. Also used by {@link DeltaSync} to read changed rows.
+     */
+    static final RowMapper<Appointments> appointmentMapper = new RowMapper<>((result, column) -> new Appointments(
+            result.getInt(column[0]),
+            result.getString(column[1]),
+            result.getString(column[2]),
+            result.getString(column[3]),
+            result.getString(column[4]),
+            result.getTimestamp(column[5]).toLocalDateTime(),
+            result.getTimestamp(column[6]).toLocalDateTime(),
+            result.getInt(column[7]),
+            result.getInt(column[8]),
+            result.getInt(column[9])),
+            "Appointment_ID", "Title", "Description", "Location", "Type", "Start", "End", "Customer_ID", "User_ID", "Contact_ID");
+
+    /**
+     * Maps only the ID, times and owner columns of an appointment, leaving its text fields empty.
+     */
+    private static final RowMapper<Appointments> appointmentTimesMapper = new RowMapper<>((result, column) -> new Appointments(
+            result.getInt(column[0]), null, null, null, null,
+            result.getTimestamp(column[1]).toLocalDateTime(),
+            result.getTimestamp(column[2]).toLocalDateTime(),
+            result.getInt(column[3]),
+            result.getInt(column[4]),
+            result.getInt(column[5])),
+            "Appointment_ID", "Start", "End", "Customer_ID", "User_ID", "Contact_ID");
+
     /**
      * Retrieves all appointments from the database and populates them into an observable list.
      * @return An ObservableList containing all appointments.
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static ObservableList<Appointments> selectAllAppointments() throws SQLException {
-        appointmentObservableList = FXCollections.observableArrayList();
-
-        String sql = "SELECT * FROM appointments";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
+        String sql = "SELECT " + appointmentMapper.columns() + " FROM appointments";
+        appointmentObservableList = JDBC.query(sql, appointmentMapper::toObservableList);
+        return appointmentObservableList;
+    }
 
-        while (result.next()) {
-            int appId = result.getInt("Appointment_ID");
-            String title = result.getString("Title");
-            String description = result.getString("Description");
-            String location = result.getString("Location");
-            String type = result.getString("Type");
-            LocalDateTime begin = result.getTimestamp("Start").toLocalDateTime();
-            LocalDateTime end = result.getTimestamp("End").toLocalDateTime();
-            int custId = result.getInt("Customer_ID");
-            int userId = result.getInt("User_ID");
-            int contId = result.getInt("Contact_ID");
+    /**
+     * Retrieves one page of appointments in appointment ID order, starting after the given ID.
+     * The page is found through the primary key instead of an OFFSET, so later pages are as fast to read as the first.
+     * The caches that hold every appointment, {@link AppointmentStore} and {@link c195.Helper.AppointmentSearch}, read the table with it a page at a time, so no single query holds a long result set open.
+     * @param afterId The appointment ID the page starts after, or 0 for the first page.
+     * @param limit The maximum number of appointments to read.
+     * @return A List containing at most limit appointments.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static List<Appointments> selectAppointmentsPage(int afterId, int limit) throws SQLException {
+        String sql = "SELECT " + appointmentMapper.columns() + " FROM appointments WHERE Appointment_ID > ? ORDER BY Appointment_ID LIMIT ?";
+        return JDBC.query(sql, statement -> {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+        }, appointmentMapper::toList);
+    }
 
-            appointmentObservableList.add(new Appointments(appId, title, description, location, type, begin, end, custId, userId, contId));
-        }
-        return appointmentObservableList;
+    /**
+     * Retrieves the ID, start and end times, and customer, user and contact IDs of every appointment.
+     * The text fields of the returned appointments are left empty; this is meant for in-memory indexes that only need the times.
+     * @return A List of appointments holding only their IDs and times.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static List<Appointments> selectAppointmentTimes() throws SQLException {
+        String sql = "SELECT " + appointmentTimesMapper.columns() + " FROM appointments";
+        return JDBC.query(sql, appointmentTimesMapper::toList);
     }
 
     /**
@@ -93,26 +136,8 @@ public abstract class AppointmentsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static ObservableList<Appointments> selectAppsByCust(int custId) throws SQLException {
-        appointmentObservableList = FXCollections.observableArrayList();
-
-        String sql = "SELECT * FROM appointments WHERE Customer_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setInt(1, custId);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            int appId = result.getInt("Appointment_ID");
-            String title = result.getString("Title");
-            String description = result.getString("Description");
-            String location = result.getString("Location");
-            String type = result.getString("Type");
-            LocalDateTime begin = result.getTimestamp("Start").toLocalDateTime();
-            LocalDateTime end = result.getTimestamp("End").toLocalDateTime();
-            int userId = result.getInt("User_ID");
-            int contId = result.getInt("Contact_ID");
-
-            appointmentObservableList.add(new Appointments(appId, title, description, location, type, begin, end, custId, userId, contId));
-        }
+        String sql = "SELECT " + appointmentMapper.columns() + " FROM appointments WHERE Customer_ID = ?";
+        appointmentObservableList = JDBC.query(sql, statement -> statement.setInt(1, custId), appointmentMapper::toObservableList);
         return appointmentObservableList;
     }
 
@@ -123,27 +148,25 @@ public abstract class AppointmentsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static ObservableList<Appointments> selectAppsByCont(int contId) throws SQLException {
-        appointmentObservableList = FXCollections.observableArrayList();
-
-        String sql = "SELECT * FROM appointments WHERE Contact_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setInt(1, contId);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            int appId = result.getInt("Appointment_ID");
-            String title = result.getString("Title");
-            String description = result.getString("Description");
-            String location = result.getString("Location");
-            String type = result.getString("Type");
-            LocalDateTime begin = result.getTimestamp("Start").toLocalDateTime();
-            LocalDateTime end = result.getTimestamp("End").toLocalDateTime();
-            int custId = result.getInt("Customer_ID");
-            int userId = result.getInt("User_ID");
-            contId = result.getInt("Contact_ID");
+        String sql = "SELECT " + appointmentMapper.columns() + " FROM appointments WHERE Contact_ID = ?";
+        appointmentObservableList = JDBC.query(sql, statement -> statement.setInt(1, contId), appointmentMapper::toObservableList);
+        return appointmentObservableList;
+    }
 
-            appointmentObservableList.add(new Appointments(appId, title, description, location, type, begin, end, custId, userId, contId));
-        }
+    /**
+     * Retrieves all appointments starting within a time range from the database and populates them into an observable list.
+     * The range is compared directly against the Start column so the query can use the index on Start.
+     * @param start The inclusive lower bound of the appointment start time.
+     * @param end The exclusive upper bound of the appointment start time.
+     * @return An ObservableList containing appointments starting in the range.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static ObservableList<Appointments> selectAppsBetween(LocalDateTime start, LocalDateTime end) throws SQLException {
+        String sql = "SELECT " + appointmentMapper.columns() + " FROM appointments WHERE Start >= ? AND Start < ?";
+        appointmentObservableList = JDBC.query(sql, statement -> {
+            statement.setTimestamp(1, Timestamp.valueOf(start));
+            statement.setTimestamp(2, Timestamp.valueOf(end));
+        }, appointmentMapper::toObservableList);
         return appointmentObservableList;
     }
 
@@ -153,28 +176,8 @@ public abstract class AppointmentsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static ObservableList<Appointments> selectAppsByMonth() throws SQLException {
-        appointmentObservableList = FXCollections.observableArrayList();
-
-        String sql = "SELECT * FROM appointments WHERE MONTH(Start) = MONTH(NOW())";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
-
-        while(result.next()) {
-            int appId = result.getInt("Appointment_ID");
-            String title = result.getString("Title");
-            String description = result.getString("Description");
-            String location = result.getString("Location");
-            String type = result.getString("Type");
-            LocalDateTime begin = result.getTimestamp("Start").toLocalDateTime();
-            LocalDateTime end = result.getTimestamp("End").toLocalDateTime();
-            int custId = result.getInt("Customer_ID");
-            int userId = result.getInt("User_ID");
-            int contId = result.getInt("Contact_ID");
-
-            appointmentObservableList.add(new Appointments(appId, title, description, location, type, begin, end, custId, userId, contId));
-        }
-
-        return appointmentObservableList;
+        LocalDateTime monthStart = DateTimeFormat.startOfMonth();
+        return selectAppsBetween(monthStart, monthStart.plusMonths(1));
     }
 
     /**
@@ -183,32 +186,12 @@ public abstract class AppointmentsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static ObservableList<Appointments> selectAppsByWeek() throws SQLException {
-        appointmentObservableList = FXCollections.observableArrayList();
-
-        String sql = "SELECT * FROM appointments WHERE WEEK(Start) = WEEK(NOW())";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
-
-        while(result.next()) {
-            int appId = result.getInt("Appointment_ID");
-            String title = result.getString("Title");
-            String description = result.getString("Description");
-            String location = result.getString("Location");
-            String type = result.getString("Type");
-            LocalDateTime begin = result.getTimestamp("Start").toLocalDateTime();
-            LocalDateTime end = result.getTimestamp("End").toLocalDateTime();
-            int custId = result.getInt("Customer_ID");
-            int userId = result.getInt("User_ID");
-            int contId = result.getInt("Contact_ID");
-
-            appointmentObservableList.add(new Appointments(appId, title, description, location, type, begin, end, custId, userId, contId));
-        }
-
-        return appointmentObservableList;
+        LocalDateTime weekStart = DateTimeFormat.startOfWeek();
+        return selectAppsBetween(weekStart, weekStart.plusWeeks(1));
     }
 
     /**
-     * Adds a new appointment to the database.
+     * Adds a new appointment to the database, stamping its Last_Update time so other clients pick it up through {@link DeltaSync}.
      * @param title The title of the appointment.
      * @param description The description of the appointment.
      * @param location The location of the appointment.
@@ -222,23 +205,28 @@ public abstract class AppointmentsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static int AddAppointment(String title, String description, String location, String type, LocalDateTime begin, LocalDateTime end, int custId, int userId, int contName) throws SQLException {
-        String sql = "INSERT INTO appointments (Appointment_ID, Title, Description, Location, Type, Start, End, Customer_ID, User_ID, Contact_ID) VALUES(null,?,?,?,?,?,?,?,?,?)";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, title);
-        statement.setString(2, description);
-        statement.setString(3, location);
-        statement.setString(4, type);
-        statement.setTimestamp(5, Timestamp.valueOf(begin));
-        statement.setTimestamp(6, Timestamp.valueOf(end));
-        statement.setInt(7, custId);
-        statement.setInt(8, userId);
-        statement.setInt(9, contName);
-        int effectedRows = statement.executeUpdate();
-        return effectedRows;
+        String sql = "INSERT INTO appointments (Appointment_ID, Title, Description, Location, Type, Start, End, Customer_ID, User_ID, Contact_ID, Last_Update) VALUES(null,?,?,?,?,?,?,?,?,?,NOW())";
+        int appId = JDBC.insert(sql, statement -> {
+            statement.setString(1, title);
+            statement.setString(2, description);
+            statement.setString(3, location);
+            statement.setString(4, type);
+            statement.setTimestamp(5, Timestamp.valueOf(begin));
+            statement.setTimestamp(6, Timestamp.valueOf(end));
+            statement.setInt(7, custId);
+            statement.setInt(8, userId);
+            statement.setInt(9, contName);
+        });
+        if (appId == 0) {
+            return 0;
+        }
+        Appointments appointment = new Appointments(appId, title, description, location, type, begin, end, custId, userId, contName);
+        EventBus.publish(ChangeEvent.created(Appointments.class, List.of(appointment)));
+        return 1;
     }
 
     /**
-     * Modifies an existing appointment in the database.
+     * Modifies an existing appointment in the database, stamping its Last_Update time so other clients pick the change up through {@link DeltaSync}.
      * @param appId The ID of the appointment to modify.
      * @param title The new title of the appointment.
      * @param description The new description of the appointment.
@@ -253,19 +241,23 @@ public abstract class AppointmentsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static int ModifyAppointment(int appId, String title, String description, String location, String type, LocalDateTime begin, LocalDateTime end, int custId, int userId, int contId) throws SQLException {
-        String sql = "UPDATE appointments SET Title = ?, Description = ?, Location = ?, Type = ?, Start = ?, End = ?, Customer_ID = ?, User_ID = ?, Contact_ID = ? WHERE Appointment_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, title);
-        statement.setString(2, description);
-        statement.setString(3, location);
-        statement.setString(4, type);
-        statement.setTimestamp(5, Timestamp.valueOf(begin));
-        statement.setTimestamp(6, Timestamp.valueOf(end));
-        statement.setInt(7, custId);
-        statement.setInt(8, userId);
-        statement.setInt(9, contId);
-        statement.setInt(10, appId);
-        int effectedRows = statement.executeUpdate();
+        String sql = "UPDATE appointments SET Title = ?, Description = ?, Location = ?, Type = ?, Start = ?, End = ?, Customer_ID = ?, User_ID = ?, Contact_ID = ?, Last_Update = NOW() WHERE Appointment_ID = ?";
+        int effectedRows = JDBC.update(sql, statement -> {
+            statement.setString(1, title);
+            statement.setString(2, description);
+            statement.setString(3, location);
+            statement.setString(4, type);
+            statement.setTimestamp(5, Timestamp.valueOf(begin));
+            statement.setTimestamp(6, Timestamp.valueOf(end));
+            statement.setInt(7, custId);
+            statement.setInt(8, userId);
+            statement.setInt(9, contId);
+            statement.setInt(10, appId);
+        });
+        if (effectedRows > 0) {
+            Appointments appointment = new Appointments(appId, title, description, location, type, begin, end, custId, userId, contId);
+            EventBus.publish(ChangeEvent.updated(Appointments.class, List.of(appointment)));
+        }
         return effectedRows;
     }
 
@@ -277,9 +269,10 @@ public abstract class AppointmentsDao {
     public static int DeleteAppointment(int appId) {
         try {
             String sql = "DELETE FROM appointments WHERE Appointment_ID = ?";
-            PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-            statement.setInt(1, appId);
-            int effectedRows = statement.executeUpdate();
+            int effectedRows = JDBC.update(sql, statement -> statement.setInt(1, appId));
+            if (effectedRows > 0) {
+                EventBus.publish(ChangeEvent.deleted(Appointments.class, List.of(appId)));
+            }
             return effectedRows;
         } catch (SQLException e) {
             System.out.println("SQL Error");
@@ -289,46 +282,25 @@ public abstract class AppointmentsDao {
 
     /**
      * Retrieves a distinct list of appointment types for a given month.
+     * The types are read from the month by type matrix cached by {@link ReportsDao}.
      * @param month The month for which to retrieve appointment types.
      * @return A List containing distinct appointment types for the specified month.
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static List<String> type(String month) throws SQLException {
-        List<String> types = new ArrayList<String>();
-        String sql = "SELECT Type FROM appointments WHERE MONTHNAME(Start) = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, month);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            types.add(result.getString("Type"));
-        }
-
-        Set<String> strings = new HashSet<>(types);
-        types.clear();
-        types.addAll(strings);
-        return types;
+        return ReportsDao.types(month);
     }
 
     /**
      * Counts the number of appointments for a given month and type.
+     * The count is read from the month by type matrix cached by {@link ReportsDao}.
      * @param month The month to filter appointments by.
      * @param type The type of appointments to count.
      * @return The total number of appointments matching the specified month and type.
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static int appsByMonthType(String month, String type) throws SQLException {
-        String sql = "SELECT * FROM appointments WHERE MONTHNAME(Start) = ? AND Type = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, month);
-        statement.setString(2, type);
-        ResultSet result = statement.executeQuery();
-
-        int total = 0;
-        while(result.next()) {
-            total = total + 1;
-        }
-        return total;
+        return ReportsDao.count(month, type);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package c195.DAO;
+
+import c195.Helper.TaskGroup;
+import javafx.application.Platform;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * This abstract class runs DAO methods on a dedicated pool of background threads so database work never blocks the JavaFX application thread.
+ * Results are handed back on the JavaFX application thread through {@link Platform#runLater(Runnable)}.
+ * Calls can be cancelled, for example when the user navigates away from the screen that started them.
+ */
+public abstract class AsyncDao {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(Integer.getInteger("c195.async.threads", 4), runnable -> {
+        Thread thread = new Thread(runnable, "dao-worker-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Runs a DAO call on a background thread.
+     * Cancelling the returned future interrupts the call if it is still running and prevents its result from being delivered.
+     * @param call The DAO call to run.
+     * @param <T> The type of value returned by the call.
+     * @return A future completed with the value returned by the call, or exceptionally with the error it threw.
+     */
+    public static <T> CompletableFuture<T> supply(DaoCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(call.call());
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        future.whenComplete((value, throwable) -> {
+            if (future.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs a DAO call on a background thread and passes its result to a callback on the JavaFX application thread.
+     * The call is registered with the screen's task group so it can be cancelled when the user leaves the screen;
+     * the callbacks are skipped for cancelled calls.
+     * @param tasks The task group of the screen starting the call.
+     * @param call The DAO call to run.
+     * @param onSuccess Receives the value returned by the call.
+     * @param onError Receives the error thrown by the call.
+     * @param <T> The type of value returned by the call.
+     * @return The future of the call.
+     */
+    public static <T> CompletableFuture<T> load(TaskGroup tasks, DaoCall<T> call, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        CompletableFuture<T> future = tasks.add(supply(call));
+        future.whenComplete((value, throwable) -> Platform.runLater(() -> {
+            if (future.isCancelled()) {
+                return;
+            }
+            if (throwable == null) {
+                onSuccess.accept(value);
+            } else {
+                onError.accept(throwable);
+            }
+        }));
+        return future;
+    }
+
+    /**
+     * Runs a DAO call on a background thread and passes its result to a callback on the JavaFX application thread.
+     * Errors are printed, as the synchronous DAO callers do.
+     * @param tasks The task group of the screen starting the call.
+     * @param call The DAO call to run.
+     * @param onSuccess Receives the value returned by the call.
+     * @param <T> The type of value returned by the call.
+     * @return The future of the call.
+     */
+    public static <T> CompletableFuture<T> load(TaskGroup tasks, DaoCall<T> call, Consumer<T> onSuccess) {
+        return load(tasks, call, onSuccess, Throwable::printStackTrace);
+    }
+
+    /**
+     * Stops the background threads, interrupting any call still running.
+     */
+    public static void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,205 @@
+package c195.DAO;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class keeps every row of a table in memory in one observable list, kept in a fixed order, for the screens that show the whole table.
+ * The list is read once in the background and is then kept up to date by the DAO mutators and {@link DeltaSync} instead of being queried again.
+ * Changes are placed by binary search on the list's order, so a changed row costs a search and one list change rather than a reload.
+ * <p>
+ * The list is only changed on the JavaFX application thread. Changes made on background threads are handed over with {@link Platform#runLater(Runnable)},
+ * and changes arriving while the list is loading are applied again once it has loaded, so none is lost to a load that read the table before them.
+ * </p>
+ * @param <T> The type of the rows.
+ */
+public class CachedTable<T> {
+
+    private final Comparator<T> order;
+    private final ToIntFunction<T> key;
+    private final DaoCall<List<T>> reader;
+    private final ObservableList<T> rows = FXCollections.observableArrayList();
+    private final ObservableList<T> readOnly = FXCollections.unmodifiableObservableList(rows);
+    private final Map<Integer, T> byKey = new HashMap<>();
+    private final List<Runnable> pending = new ArrayList<>();
+    private CompletableFuture<Void> loading;
+    private boolean loaded = false;
+
+    /**
+     * Creates an empty cache of a table.
+     * @param order The order of the rows in the list; it must tell apart rows with different keys.
+     * @param key Reads the primary key of a row.
+     * @param reader Reads every row of the table, in any order. Called on a background thread.
+     */
+    public CachedTable(Comparator<T> order, ToIntFunction<T> key, DaoCall<List<T>> reader) {
+        this.order = order;
+        this.key = key;
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the cached rows in the list's order, for wrapping in a FilteredList and SortedList.
+     * The list is empty until {@link #load()} completes. Must be used on the JavaFX application thread.
+     * @return A read-only view of the cached rows.
+     */
+    public ObservableList<T> rows() {
+        return readOnly;
+    }
+
+    /**
+     * Loads the rows in the background if they are not cached yet. Must be called on the JavaFX application thread.
+     * @return A future completed on the JavaFX application thread once the list holds every row, or exceptionally if the load failed.
+     */
+    public CompletableFuture<Void> load() {
+        if (loaded) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (loading != null) {
+            return loading;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        loading = future;
+        AsyncDao.supply(reader).whenComplete((read, throwable) -> Platform.runLater(() -> {
+            if (loading != future) {
+                return;
+            }
+            loading = null;
+            if (throwable != null) {
+                pending.clear();
+                future.completeExceptionally(throwable);
+                return;
+            }
+            List<T> sorted = new ArrayList<>(read);
+            sorted.sort(order);
+            byKey.clear();
+            for (T row : sorted) {
+                byKey.put(key.applyAsInt(row), row);
+            }
+            rows.setAll(sorted);
+            loaded = true;
+            for (Runnable change : pending) {
+                change.run();
+            }
+            pending.clear();
+            future.complete(null);
+        }));
+        return future;
+    }
+
+    /**
+     * Adds a newly saved row to the list, or moves a modified one to its new place.
+     * @param row The row that was saved.
+     */
+    public void put(T row) {
+        change(() -> replace(row));
+    }
+
+    /**
+     * Adds or replaces many saved rows at once, such as those of an import.
+     * @param saved The rows that were saved.
+     */
+    public void putAll(Collection<T> saved) {
+        List<T> copy = new ArrayList<>(saved);
+        change(() -> {
+            for (T row : copy) {
+                replace(row);
+            }
+        });
+    }
+
+    /**
+     * Removes a deleted row from the list.
+     * @param id The primary key of the deleted row.
+     */
+    public void remove(int id) {
+        change(() -> {
+            T previous = byKey.remove(id);
+            if (previous != null) {
+                removeAt(position(previous));
+            }
+        });
+    }
+
+    /**
+     * Removes every row matching a condition, such as the appointments of deleted customers.
+     * @param condition The condition of the rows to remove.
+     */
+    public void removeIf(Predicate<T> condition) {
+        change(() -> {
+            byKey.values().removeIf(condition);
+            rows.removeIf(condition);
+        });
+    }
+
+    /**
+     * Discards the list and reads it again, for when the changes made cannot be applied one by one.
+     */
+    public void invalidate() {
+        onFxThread(() -> {
+            CompletableFuture<Void> previous = loading;
+            boolean wasUsed = loaded || previous != null;
+            loaded = false;
+            loading = null;
+            pending.clear();
+            if (wasUsed) {
+                CompletableFuture<Void> next = load();
+                if (previous != null) {
+                    next.whenComplete((value, throwable) -> {
+                        if (throwable == null) {
+                            previous.complete(null);
+                        } else {
+                            previous.completeExceptionally(throwable);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies a change to the list once it is loaded, or keeps it to apply after the load in progress. Changes made before any load are dropped, as the load reads them anyway.
+     */
+    private void change(Runnable change) {
+        onFxThread(() -> {
+            if (loaded) {
+                change.run();
+            } else if (loading != null) {
+                pending.add(change);
+            }
+        });
+    }
+
+    private void replace(T row) {
+        T previous = byKey.put(key.applyAsInt(row), row);
+        if (previous != null) {
+            removeAt(position(previous));
+        }
+        int index = Collections.binarySearch(rows, row, order);
+        rows.add(index < 0 ? -index - 1 : index, row);
+    }
+
+    private int position(T row) {
+        int index = Collections.binarySearch(rows, row, order);
+        return index >= 0 ? index : rows.indexOf(row);
+    }
+
+    private void removeAt(int index) {
+        if (index >= 0) {
+            rows.remove(index);
+        }
+    }
+
+    private static void onFxThread(Runnable runnable) {
+        if (Platform.isFxApplicationThread()) {
+            runnable.run();
+        } else {
+            Platform.runLater(runnable);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package c195.DAO;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps a bounded set of open database connections that the DAOs borrow and return.
+ * Connections are validated before they are handed out, idle connections above the minimum size are evicted,
+ * and broken connections are replaced by reconnecting with an exponential backoff.
+ * Each connection carries its own {@link StatementCache}, which lives as long as the connection does.
+ */
+public class ConnectionPool {
+
+    private final String jdbcUrl;
+    private final String userName;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+    private final int validationTimeoutSeconds = 2;
+    private final int maxConnectAttempts = 5;
+    private final long initialBackoffMillis = 250;
+    private final long maxBackoffMillis = 8000;
+
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+    private final ScheduledExecutorService maintenance;
+    private int total = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates the pool, opens the minimum number of connections and starts the background idle eviction task.
+     * A failure to open the initial connections is reported but does not prevent the pool from being created,
+     * so the application can recover once the database becomes reachable.
+     * @param jdbcUrl The JDBC URL of the database.
+     * @param userName The database user name.
+     * @param password The database password.
+     * @param minSize The number of connections the pool tries to keep open at all times.
+     * @param maxSize The maximum number of connections open at the same time.
+     * @param idleTimeoutMillis How long a connection above the minimum size may stay idle before it is closed.
+     * @param borrowTimeoutMillis How long a borrower waits for a free connection when the pool is exhausted.
+     * @param statementCacheSize The number of prepared statements cached for each connection.
+     */
+    public ConnectionPool(String jdbcUrl, String userName, String password, int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis, int statementCacheSize) {
+        this.jdbcUrl = jdbcUrl;
+        this.userName = userName;
+        this.password = password;
+        this.minSize = Math.max(0, minSize);
+        this.maxSize = Math.max(1, Math.max(minSize, maxSize));
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = Math.max(1, statementCacheSize);
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        maintenance.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+
+        try {
+            fillToMinimum();
+        } catch (SQLException e) {
+            System.out.println("Error:" + e.getMessage());
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool.
+     * An idle connection is validated before it is returned; if none is idle and the pool is below its maximum size a new one is opened,
+     * otherwise the caller waits until a connection is released.
+     * Every borrowed connection must be handed back through {@link #release(Connection)}.
+     * @return An open, validated connection.
+     * @throws SQLException If the pool is closed, no connection becomes available in time, or a new connection cannot be opened.
+     */
+    public Connection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeoutMillis;
+        while (true) {
+            IdleConnection candidate;
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                candidate = idle.pollFirst();
+                if (candidate == null) {
+                    if (total < maxSize) {
+                        total++;
+                    } else {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new SQLException("Timed out waiting for a database connection");
+                        }
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a database connection", e);
+                        }
+                        continue;
+                    }
+                }
+            }
+
+            if (candidate == null) {
+                try {
+                    return connect();
+                } catch (SQLException e) {
+                    synchronized (this) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+            }
+            if (isUsable(candidate.connection)) {
+                return candidate.connection;
+            }
+            discard(candidate.connection);
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool.
+     * Connections that were closed or left in a transaction are cleaned up so the next borrower receives a connection in its default state.
+     * @param connection The connection to return, may be null.
+     */
+    public void release(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            if (connection.isClosed()) {
+                discard(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+            return;
+        }
+        synchronized (this) {
+            if (!closed) {
+                idle.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+                notifyAll();
+                return;
+            }
+        }
+        discard(connection);
+    }
+
+    /**
+     * Returns the prepared statement cache of a connection borrowed from this pool.
+     * The cache must only be used while the connection is borrowed, by the thread that borrowed it.
+     * @param connection A connection obtained from {@link #borrow()}.
+     * @return The statement cache belonging to the connection.
+     */
+    public synchronized StatementCache statementCache(Connection connection) {
+        return statementCaches.computeIfAbsent(connection, open -> new StatementCache(open, statementCacheSize));
+    }
+
+    /**
+     * Closes every idle connection and stops the maintenance task.
+     * Connections still borrowed are closed as soon as they are released.
+     */
+    public void close() {
+        Deque<IdleConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        maintenance.shutdownNow();
+        for (IdleConnection entry : toClose) {
+            discard(entry.connection);
+        }
+    }
+
+    /**
+     * Returns the number of connections currently open, both idle and borrowed.
+     * @return The number of open connections.
+     */
+    public synchronized int size() {
+        return total;
+    }
+
+    /**
+     * Returns the number of connections waiting in the pool to be borrowed.
+     * @return The number of idle connections.
+     */
+    public synchronized int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Opens a new physical connection, retrying with an exponential backoff when the database cannot be reached.
+     * @return A newly opened connection.
+     * @throws SQLException If every attempt fails.
+     */
+    private Connection connect() throws SQLException {
+        long backoff = initialBackoffMillis;
+        SQLException lastError = null;
+        for (int attempt = 1; attempt <= maxConnectAttempts; attempt++) {
+            try {
+                return DriverManager.getConnection(jdbcUrl, userName, password);
+            } catch (SQLException e) {
+                lastError = e;
+                if (attempt == maxConnectAttempts) {
+                    break;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, maxBackoffMillis);
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * Checks that a pooled connection is still open and answering.
+     * @param connection The connection to validate.
+     * @return true if the connection can be handed out; false otherwise.
+     */
+    private boolean isUsable(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a connection that is no longer usable and frees its slot in the pool.
+     * @param connection The connection to discard.
+     */
+    private void discard(Connection connection) {
+        StatementCache cache;
+        synchronized (this) {
+            cache = statementCaches.remove(connection);
+        }
+        if (cache != null) {
+            cache.close();
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+        synchronized (this) {
+            total--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Opens connections until the pool holds at least its minimum size.
+     * @throws SQLException If a connection cannot be opened.
+     */
+    private void fillToMinimum() throws SQLException {
+        while (true) {
+            synchronized (this) {
+                if (closed || total >= minSize) {
+                    return;
+                }
+                total++;
+            }
+            Connection connection;
+            try {
+                connection = connect();
+            } catch (SQLException e) {
+                synchronized (this) {
+                    total--;
+                    notifyAll();
+                }
+                throw e;
+            }
+            release(connection);
+        }
+    }
+
+    /**
+     * Periodic task that closes connections idle for longer than the idle timeout while the pool is above its minimum size,
+     * and reopens connections when the pool has fallen below its minimum size after a database outage.
+     */
+    private void maintain() {
+        Deque<IdleConnection> expired = new ArrayDeque<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && total - expired.size() > minSize) {
+                IdleConnection entry = oldestFirst.next();
+                if (now - entry.idleSince < idleTimeoutMillis) {
+                    break;
+                }
+                oldestFirst.remove();
+                expired.add(entry);
+            }
+        }
+        for (IdleConnection entry : expired) {
+            discard(entry.connection);
+        }
+        try {
+            fillToMinimum();
+        } catch (SQLException e) {
+            System.out.println("Error:" + e.getMessage());
+        }
+    }
+
+    /**
+     * An idle connection together with the time it was returned to the pool.
+     */
+    private static class IdleConnection {
+        private final Connection connection;
+        private final long idleSince;
+
+        private IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+}
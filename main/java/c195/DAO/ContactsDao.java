@@ -2,8 +2,6 @@ package c195.DAO;
 
 import c195.Model.Contact;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,30 +19,28 @@ public abstract class ContactsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static List<Integer> contId() throws SQLException {
-        List<Integer> contactsList = new ArrayList<Integer>();
-        String sql = "SELECT * FROM contacts";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            contactsList.add(result.getInt("Contact_ID"));
-        }
-        return contactsList;
+        String sql = "SELECT Contact_ID FROM contacts";
+        return JDBC.query(sql, result -> {
+            List<Integer> contactsList = new ArrayList<Integer>();
+            while (result.next()) {
+                contactsList.add(result.getInt("Contact_ID"));
+            }
+            return contactsList;
+        });
     }
 
     public static List<Contact> contName() throws SQLException {
-        List<Contact> contactsList = new ArrayList<>();
-        String sql = "SELECT * FROM contacts";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            int id = result.getInt("Contact_ID");
-            String name = result.getString("Contact_Name");
-            // Create a new Contact object and add it to the list
-            Contact contact = new Contact(id, name);
-            contactsList.add(contact);
-        }
-        return contactsList;
+        String sql = "SELECT Contact_ID, Contact_Name FROM contacts";
+        return JDBC.query(sql, result -> {
+            List<Contact> contactsList = new ArrayList<>();
+            while (result.next()) {
+                int id = result.getInt("Contact_ID");
+                String name = result.getString("Contact_Name");
+                // Create a new Contact object and add it to the list
+                Contact contact = new Contact(id, name);
+                contactsList.add(contact);
+            }
+            return contactsList;
+        });
     }
 }
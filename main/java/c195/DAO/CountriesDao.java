@@ -4,8 +4,6 @@ import c195.Model.Countries;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -18,17 +16,16 @@ public abstract class CountriesDao {
 
     public static ObservableList<Countries> allCountries() throws SQLException {
         String sql = "SELECT * FROM countries";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
+        return JDBC.query(sql, result -> {
+            ObservableList<Countries> countryIdAndName = FXCollections.observableArrayList();
 
-        ObservableList<Countries> countryIdAndName = FXCollections.observableArrayList();
-
-        while (result.next()) {
-            int countryId = result.getInt("Country_ID");
-            String countryName = result.getString("Country");
-            countryIdAndName.add(new Countries(countryId, countryName));
-        }
-        return countryIdAndName;
+            while (result.next()) {
+                int countryId = result.getInt("Country_ID");
+                String countryName = result.getString("Country");
+                countryIdAndName.add(new Countries(countryId, countryName));
+            }
+            return countryIdAndName;
+        });
     }
 
     /**
@@ -37,15 +34,14 @@ public abstract class CountriesDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static List<String> countries() throws SQLException {
-        List<String> countriesList = new ArrayList<String>();
-        String sql = "SELECT * FROM countries";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            countriesList.add(result.getString("Country"));
-        }
-        return countriesList;
+        String sql = "SELECT Country FROM countries";
+        return JDBC.query(sql, result -> {
+            List<String> countriesList = new ArrayList<String>();
+            while (result.next()) {
+                countriesList.add(result.getString("Country"));
+            }
+            return countriesList;
+        });
     }
 
     /**
@@ -55,15 +51,13 @@ public abstract class CountriesDao {
      */
     public static String countriesName(int countryId) throws SQLException {
         String sql = "SELECT Country FROM countries WHERE Country_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setInt(1, countryId);
-        ResultSet result = statement.executeQuery();
-
-        String countryName = null;
-        while (result.next()) {
-            countryName = result.getString("Country");
-        }
-        return countryName;
+        return JDBC.query(sql, statement -> statement.setInt(1, countryId), result -> {
+            String countryName = null;
+            while (result.next()) {
+                countryName = result.getString("Country");
+            }
+            return countryName;
+        });
     }
 
     /**
@@ -74,15 +68,13 @@ public abstract class CountriesDao {
      */
     public static int countriesId(String countryName) throws SQLException {
         String sql = "SELECT Country_ID FROM countries WHERE Country = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, countryName);
-        ResultSet result = statement.executeQuery();
-
-        int countryId = 0;
-        while (result.next()) {
-            countryId = result.getInt("Country_ID");
-        }
-        return countryId;
+        return JDBC.query(sql, statement -> statement.setString(1, countryName), result -> {
+            int countryId = 0;
+            while (result.next()) {
+                countryId = result.getInt("Country_ID");
+            }
+            return countryId;
+        });
     }
 
 }
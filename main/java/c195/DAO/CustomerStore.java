@@ -0,0 +1,78 @@
+package c195.DAO;
+
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
+import c195.Model.Customers;
+import javafx.collections.ObservableList;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This abstract class keeps every customer in memory for the customer screen, in one observable list ordered by customer ID.
+ * The list is read once, a page at a time through the primary key, and is then kept up to date by the customer change events
+ * on the {@link EventBus}, published by {@link CustomersDao} and {@link DeltaSync}, so deleting a customer or a change made on another client updates only the rows concerned instead of reloading the table.
+ * Pages are read with the {@code c195.store.pageSize} system property, as for {@link AppointmentStore}.
+ * The list itself is a {@link CachedTable}, which only changes it on the JavaFX application thread.
+ */
+public abstract class CustomerStore {
+
+    private static final int pageSize = Math.max(1, Integer.getInteger("c195.store.pageSize", 1000));
+    private static final CachedTable<Customers> table = new CachedTable<>(
+            Comparator.comparingInt(Customers::getCustId), Customers::getCustId, CustomerStore::readAll);
+
+    static {
+        EventBus.subscribe(Customers.class, CustomerStore::onCustomers);
+    }
+
+    /**
+     * Returns the cached customers in ID order, for wrapping in a SortedList.
+     * The list is empty until {@link #load()} completes. Must be used on the JavaFX application thread.
+     * @return A read-only view of the cached customers.
+     */
+    public static ObservableList<Customers> customers() {
+        return table.rows();
+    }
+
+    /**
+     * Loads the customers in the background if they are not cached yet. Must be called on the JavaFX application thread.
+     * @return A future completed on the JavaFX application thread once the list holds every customer, or exceptionally if the load failed.
+     */
+    public static CompletableFuture<Void> load() {
+        return table.load();
+    }
+
+    /**
+     * Adds saved customers to the list or replaces modified ones, removes deleted ones, and reads the list again when the changes are not known one by one.
+     */
+    private static void onCustomers(ChangeEvent<Customers> event) {
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                table.putAll(event.getEntities());
+                break;
+            case DELETED:
+                for (int custId : event.getIds()) {
+                    table.remove(custId);
+                }
+                break;
+            default:
+                table.invalidate();
+        }
+    }
+
+    private static List<Customers> readAll() throws SQLException {
+        List<Customers> rows = new ArrayList<>();
+        int afterId = 0;
+        while (true) {
+            List<Customers> page = CustomersDao.selectCustomersPage(afterId, pageSize);
+            rows.addAll(page);
+            if (page.size() < pageSize) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getCustId();
+        }
+        return rows;
+    }
+}
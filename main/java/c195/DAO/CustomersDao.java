@@ -1,23 +1,42 @@
 package c195.DAO;
 
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
 import c195.Model.Customers;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This abstract class serves as a data access object (DAO) for managing customer information in the database.
  * It provides static methods for CRUD (creating, reading, updating, and deleting) customer records, as well as retrieving lists of customers.
+ * Each saved change is published as a {@link ChangeEvent} on the {@link EventBus}; deleting customers also removes their appointments from every subscriber.
  */
 public abstract class CustomersDao {
 
+    private static final int deleteChunkSize = 500;
     private static ObservableList<Customers> customersObservableList = FXCollections.observableArrayList();
 
+    /**
+     * Maps a row of the customers table to a Customers object. Also used by {@link DeltaSync} to read changed rows.
+     */
+    static final RowMapper<Customers> customerMapper = new RowMapper<>((result, column) -> new Customers(
+            result.getInt(column[0]),
+            result.getString(column[1]),
+            result.getString(column[2]),
+            result.getString(column[3]),
+            result.getString(column[4]),
+            result.getInt(column[5])),
+            "Customer_ID", "Customer_Name", "Address", "Postal_Code", "Phone", "Division_ID");
+
     /**
      * Retrieves all customer records from the customers table in the database and populates them into an observable list.
      * Each record is encapsulated as a Customers object.
@@ -25,44 +44,64 @@ public abstract class CustomersDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static ObservableList<Customers> allCustomers() throws SQLException {
-        customersObservableList = FXCollections.observableArrayList();
-        String sql = "SELECT * FROM customers";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            int custId = result.getInt("Customer_ID");
-            String custName = result.getString("Customer_Name");
-            String address = result.getString("Address");
-            String zipCode = result.getString("Postal_Code");
-            String phoneNum = result.getString("Phone");
-            int divId = result.getInt("Division_ID");
-
-            customersObservableList.add(new Customers(custId, custName, address, zipCode, phoneNum, divId));
-        }
+        String sql = "SELECT " + customerMapper.columns() + " FROM customers";
+        customersObservableList = JDBC.query(sql, customerMapper::toObservableList);
         return customersObservableList;
     }
 
+    /**
+     * Retrieves one page of customers in customer ID order, starting after the given ID.
+     * The page is found through the primary key instead of an OFFSET, so later pages are as fast to read as the first.
+     * The caches that hold every customer, {@link CustomerStore} and {@link c195.Helper.CustomerSearch}, read the table with it a page at a time, so no single query holds a long result set open.
+     * @param afterId The customer ID the page starts after, or 0 for the first page.
+     * @param limit The maximum number of customers to read.
+     * @return A List containing at most limit customers.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static List<Customers> selectCustomersPage(int afterId, int limit) throws SQLException {
+        String sql = "SELECT " + customerMapper.columns() + " FROM customers WHERE Customer_ID > ? ORDER BY Customer_ID LIMIT ?";
+        return JDBC.query(sql, statement -> {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+        }, customerMapper::toList);
+    }
+
     /**
      * Retrieves a list of all customer IDs from the customers table in the database.
      * @return A List of integers, each representing a unique customer ID.
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static List<Integer> custId() throws SQLException {
-        List<Integer> custIdList = new ArrayList<Integer>();
-        String sql = "SELECT * FROM customers";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
+        String sql = "SELECT Customer_ID FROM customers";
+        return JDBC.query(sql, result -> {
+            List<Integer> custIdList = new ArrayList<Integer>();
+            while (result.next()) {
+                custIdList.add(result.getInt("Customer_ID"));
+            }
+            return custIdList;
+        });
+    }
 
-        while (result.next()) {
-            custIdList.add(result.getInt("Customer_ID"));
-        }
-        return custIdList;
+    /**
+     * Retrieves the first-level division of every customer, for reports that group appointments by division or country.
+     * @return A map from customer ID to division ID.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static Map<Integer, Integer> divisionsByCustomer() throws SQLException {
+        String sql = "SELECT Customer_ID, Division_ID FROM customers";
+        return JDBC.query(sql, result -> {
+            Map<Integer, Integer> divisions = new HashMap<>();
+            while (result.next()) {
+                divisions.put(result.getInt("Customer_ID"), result.getInt("Division_ID"));
+            }
+            return divisions;
+        });
     }
 
     /**
-     * Inserts a new customer record into the customers table in the database.
-     * @param custId The ID of the new customer.
+     * Inserts a new customer record into the customers table in the database and publishes it as created.
+     * Its Last_Update time is stamped so other clients pick it up through {@link DeltaSync}.
+     * @param custId The ID of the new customer, or null to have the database generate it.
      * @param custName The name of the new customer.
      * @param address The address of the new customer.
      * @param zipCode The postal code of the new customer.
@@ -72,20 +111,26 @@ public abstract class CustomersDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static int AddCustomer(String custId, String custName, String address, String zipCode, String phoneNum, int divId) throws SQLException {
-        String sql = "INSERT INTO client_schedule.customers(Customer_ID, Customer_Name, Address, Postal_Code, Phone, Division_ID) VALUES(?,?,?,?,?,?)";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, custId);
-        statement.setString(2, custName);
-        statement.setString(3, address);
-        statement.setString(4, zipCode);
-        statement.setString(5, phoneNum);
-        statement.setInt(6, divId);
-        int effectedRows = statement.executeUpdate();
-        return effectedRows;
+        String sql = "INSERT INTO client_schedule.customers(Customer_ID, Customer_Name, Address, Postal_Code, Phone, Division_ID, Last_Update) VALUES(?,?,?,?,?,?,NOW())";
+        int generatedId = JDBC.insert(sql, statement -> {
+            statement.setString(1, custId);
+            statement.setString(2, custName);
+            statement.setString(3, address);
+            statement.setString(4, zipCode);
+            statement.setString(5, phoneNum);
+            statement.setInt(6, divId);
+        });
+        int newId = custId != null ? Integer.parseInt(custId) : generatedId;
+        if (newId == 0) {
+            return 0;
+        }
+        EventBus.publish(ChangeEvent.created(Customers.class, List.of(new Customers(newId, custName, address, zipCode, phoneNum, divId))));
+        return 1;
     }
 
     /**
-     * Updates an existing customer record in the customers table in the database based on the provided customer ID.
+     * Updates an existing customer record in the customers table in the database based on the provided customer ID, and publishes it as updated.
+     * Its Last_Update time is stamped so other clients pick the change up through {@link DeltaSync}.
      * @param custId The ID of the customer to update.
      * @param custName The customer name to update.
      * @param address The address to update.
@@ -96,35 +141,105 @@ public abstract class CustomersDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static int ModifyCustomer(int custId, String custName, String address, String zipCode, String phoneNum, int divId) throws SQLException {
-        String sql = "UPDATE customers SET Customer_Name = ?, Address = ?, Postal_Code = ?, Phone = ?, Division_ID = ? WHERE Customer_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, custName);
-        statement.setString(2, address);
-        statement.setString(3, zipCode);
-        statement.setString(4, phoneNum);
-        statement.setInt(5, divId);
-        statement.setInt(6, custId);
-        int effectedRows = statement.executeUpdate();
+        String sql = "UPDATE customers SET Customer_Name = ?, Address = ?, Postal_Code = ?, Phone = ?, Division_ID = ?, Last_Update = NOW() WHERE Customer_ID = ?";
+        int effectedRows = JDBC.update(sql, statement -> {
+            statement.setString(1, custName);
+            statement.setString(2, address);
+            statement.setString(3, zipCode);
+            statement.setString(4, phoneNum);
+            statement.setInt(5, divId);
+            statement.setInt(6, custId);
+        });
+        if (effectedRows > 0) {
+            EventBus.publish(ChangeEvent.updated(Customers.class, List.of(new Customers(custId, custName, address, zipCode, phoneNum, divId))));
+        }
         return effectedRows;
     }
 
     /**
-     * Deletes a customer record from the customers table in the database based on the provided customer ID.
+     * Deletes a customer record and all of its appointments from the database.
      * @param custId The ID of the customer to delete.
-     * @return The number of rows effected by the delete operation, typically 1 if the record is successfully deleted.
+     * @return The number of customer rows effected by the delete operation, typically 1 if the record is successfully deleted, or 0 if an error occurs.
      */
     public static int DeleteCustomer(int custId) {
         try {
-            String sql = "DELETE FROM customers WHERE Customer_ID = ?";
-            PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-            statement.setInt(1, custId);
-            int effectedRows = statement.executeUpdate();
-            System.out.println(effectedRows);
-            return effectedRows;
+            return DeleteCustomers(List.of(custId));
         } catch (SQLException e) {
             System.out.println("SQL Error");
             return 0;
         }
     }
 
+    /**
+     * Deletes customer records and all of their appointments from the database in a single transaction.
+     * The appointments are removed with one set-based statement per chunk of IDs, and the customers with one batch of single-row deletes per chunk,
+     * so a customer with many appointments costs no more round trips than one with none,
+     * and a failure midway rolls everything back instead of leaving a customer with only part of its appointments.
+     * The update count of each customer delete tells which customers were actually deleted, and only those are published as deleted;
+     * IDs that no longer exist, such as customers another client deleted first, are left out.
+     * @param custIds The IDs of the customers to delete.
+     * @return The number of customer rows effected by the delete operation.
+     * @throws SQLException If there is an issue executing the SQL statements; nothing is deleted in that case.
+     */
+    public static int DeleteCustomers(List<Integer> custIds) throws SQLException {
+        if (custIds.isEmpty()) {
+            return 0;
+        }
+        List<Integer> deleted = JDBC.transaction(connection -> {
+            List<Integer> customers = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM customers WHERE Customer_ID = ?")) {
+                for (int from = 0; from < custIds.size(); from += deleteChunkSize) {
+                    List<Integer> chunk = custIds.subList(from, Math.min(custIds.size(), from + deleteChunkSize));
+                    deleteWhereIn(connection, "DELETE FROM appointments WHERE Customer_ID IN ", chunk);
+                    for (int custId : chunk) {
+                        statement.setInt(1, custId);
+                        statement.addBatch();
+                    }
+                    int[] counts = statement.executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] > 0) {
+                            customers.add(chunk.get(i));
+                        }
+                    }
+                }
+            }
+            return customers;
+        });
+        if (!deleted.isEmpty()) {
+            EventBus.publish(ChangeEvent.deleted(Customers.class, deleted));
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Counts the appointments of a group of customers.
+     * @param custIds The IDs of the customers.
+     * @return The total number of appointments the customers have.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static int countAppointments(List<Integer> custIds) throws SQLException {
+        if (custIds.isEmpty()) {
+            return 0;
+        }
+        String sql = "SELECT COUNT(*) FROM appointments WHERE Customer_ID IN " + placeholders(custIds.size());
+        return JDBC.query(sql, statement -> bindIds(statement, custIds), result -> result.next() ? result.getInt(1) : 0);
+    }
+
+    private static int deleteWhereIn(Connection connection, String sql, List<Integer> ids) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql + placeholders(ids.size()))) {
+            bindIds(statement, ids);
+            return statement.executeUpdate();
+        }
+    }
+
+    private static void bindIds(PreparedStatement statement, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            statement.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return "(" + String.join(",", Collections.nCopies(count, "?")) + ")";
+    }
+
 }
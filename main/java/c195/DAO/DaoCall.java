@@ -0,0 +1,19 @@
+package c195.DAO;
+
+import java.sql.SQLException;
+
+/**
+ * This functional interface is designed for <b>lambda</b> expressions and method references that call a DAO method.
+ * It lets {@link AsyncDao} run existing DAO methods, such as {@code AppointmentsDao::selectAllAppointments}, on a background thread.
+ * @param <T> The type of value returned by the DAO method.
+ */
+@FunctionalInterface
+public interface DaoCall<T> {
+    /**
+     * Calls the DAO method.
+     * @return The value returned by the DAO method.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    T call() throws SQLException;
+
+}
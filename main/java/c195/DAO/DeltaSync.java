@@ -0,0 +1,286 @@
+package c195.DAO;
+
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * This abstract class keeps the cached appointments and customers in step with changes saved by other clients, without reloading the tables.
+ * Every few seconds it reads only the rows whose Last_Update time is at or after a watermark, the database time of the previous poll,
+ * and the tombstones of the rows deleted since then, and publishes them as change events on the {@link EventBus}, so the caches apply them as they do the changes saved by this client.
+ * Both reads are range scans of an index, so a poll costs the same however large the tables grow.
+ * The tombstones are written by the delete triggers of resources/sql/003_tombstones.sql; without them, deletions by other clients are not picked up until the next login.
+ * <p>
+ * Changes this client saved itself are already in its caches, so they are remembered from the change events of the DAOs and are not published again when a poll reads them back;
+ * a row read back with other values than this client saved was changed again by another client, and is published.
+ * Changed rows are published as updates, which the caches apply as an insert for rows they do not hold, since telling a new row from a changed one would mean keeping every ID.
+ * </p>
+ * <p>
+ * Polls run on one background thread, every 15 seconds by default; the interval can be set with the {@code c195.sync.intervalSeconds}
+ * system property, and 0 turns syncing off. Rows are read again for a few seconds past the watermark, set with {@code c195.sync.overlapSeconds},
+ * so a change committed just after a poll started is not missed; only the rows and tombstones of that window are remembered, to skip the ones read already.
+ * Tombstones are kept for 24 hours, set with {@code c195.sync.tombstoneHours}; a client that could not poll for longer reloads its caches instead.
+ * The mutators of this application stamp Last_Update themselves, and resources/sql/002_last_update_indexes.sql indexes the column for these queries.
+ * </p>
+ */
+public abstract class DeltaSync {
+
+    private static final long intervalSeconds = Long.getLong("c195.sync.intervalSeconds", 15L);
+    private static final long overlapMillis = Long.getLong("c195.sync.overlapSeconds", 5L) * 1000L;
+    private static final long tombstoneMillis = Math.max(1L, Long.getLong("c195.sync.tombstoneHours", 24L)) * 3600_000L;
+    private static final long appliedMillis = Math.max(60_000L, 2 * (intervalSeconds * 1000L + overlapMillis));
+
+    private static final Tracker<Customers> customers = new Tracker<>("customers", CustomersDao.customerMapper, Customers::getCustId,
+            customer -> Arrays.asList(customer.getCustName(), customer.getAddress(), customer.getZipcode(), customer.getPhoneNum(), customer.getDivId()));
+    private static final Tracker<Appointments> appointments = new Tracker<>("appointments", AppointmentsDao.appointmentMapper, Appointments::getAppId,
+            appointment -> Arrays.asList(appointment.getTitle(), appointment.getDescription(), appointment.getLocation(), appointment.getType(),
+                    appointment.getBegin(), appointment.getEnd(), appointment.getCustId(), appointment.getUserId(), appointment.getContId()));
+    private static ScheduledExecutorService timer;
+    private static volatile Thread pollThread;
+    private static boolean tombstones = true;
+    private static Timestamp pruned;
+
+    static {
+        EventBus.subscribe(Customers.class, customers::applied);
+        EventBus.subscribe(Appointments.class, appointments::applied);
+    }
+
+    /**
+     * Starts polling for changes in the background. Has no effect if syncing is turned off or already running.
+     */
+    public static synchronized void start() {
+        if (intervalSeconds <= 0 || timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "delta-sync");
+            thread.setDaemon(true);
+            pollThread = thread;
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(DeltaSync::poll, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops polling for changes.
+     */
+    public static synchronized void stop() {
+        if (timer == null) {
+            return;
+        }
+        timer.shutdownNow();
+        timer = null;
+    }
+
+    /**
+     * Publishes the changes to customers and then to appointments, so the appointments of a deleted customer are removed in the same poll.
+     * Errors are printed and the next poll tries again from the same watermark.
+     */
+    private static void poll() {
+        try {
+            Timestamp now = JDBC.query("SELECT NOW()", result -> result.next() ? result.getTimestamp(1) : null);
+            pruneTombstones(now);
+            customers.poll(now).publish(Customers.class);
+            appointments.poll(now).publish(Appointments.class);
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("Sync Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the tombstones older than every watermark still in use, about once an hour. Any client may do it, as they all keep them for the same time.
+     */
+    private static void pruneTombstones(Timestamp now) throws SQLException {
+        if (!tombstones || (pruned != null && now.getTime() - pruned.getTime() < 3600_000L)) {
+            return;
+        }
+        Timestamp before = new Timestamp(now.getTime() - tombstoneMillis);
+        try {
+            JDBC.update("DELETE FROM tombstones WHERE Deleted_At < ?", statement -> statement.setTimestamp(1, before));
+        } catch (SQLException e) {
+            if (!missingTable(e)) {
+                throw e;
+            }
+        }
+        pruned = now;
+    }
+
+    /**
+     * Turns the reading of tombstones off if the tombstone table has not been created, so the changed rows are still synced.
+     * @return true if the error is a missing table.
+     */
+    private static boolean missingTable(SQLException e) {
+        if (!"42S02".equals(e.getSQLState())) {
+            return false;
+        }
+        if (tombstones) {
+            tombstones = false;
+            System.out.println("Sync Notice: no tombstones table, deletions by other clients are not synced. Run resources/sql/003_tombstones.sql to add it.");
+        }
+        return true;
+    }
+
+    /**
+     * The watermark of one table, the rows and tombstones of the overlap window already read, and the changes this client saved itself.
+     * The watermark and the window are only used on the polling thread; the saved changes are recorded on the threads of the DAOs.
+     * @param <T> The type of the table's rows.
+     */
+    private static class Tracker<T> {
+        private final String table;
+        private final RowMapper<T> mapper;
+        private final ToIntFunction<T> key;
+        private final Function<T, List<Object>> values;
+        private final Map<Integer, Timestamp> recentRows = new HashMap<>();
+        private final Map<Long, Timestamp> recentTombstones = new HashMap<>();
+        private final Map<Integer, Applied> appliedRows = new ConcurrentHashMap<>();
+        private final Map<Integer, Long> appliedDeletes = new ConcurrentHashMap<>();
+        private Timestamp watermark;
+
+        private Tracker(String table, RowMapper<T> mapper, ToIntFunction<T> key, Function<T, List<Object>> values) {
+            this.table = table;
+            this.mapper = mapper;
+            this.key = key;
+            this.values = values;
+        }
+
+        /**
+         * Remembers a change this client saved, so a poll reading it back does not publish it again. Changes published by the polling thread are not remembered.
+         */
+        private void applied(ChangeEvent<T> event) {
+            if (Thread.currentThread() == pollThread) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            switch (event.getKind()) {
+                case CREATED:
+                case UPDATED:
+                    for (T row : event.getEntities()) {
+                        appliedRows.put(key.applyAsInt(row), new Applied(values.apply(row), now));
+                    }
+                    break;
+                case DELETED:
+                    for (int id : event.getIds()) {
+                        appliedDeletes.put(id, now);
+                    }
+                    break;
+                default:
+            }
+        }
+
+        /**
+         * Reads the rows changed and the tombstones written since the watermark, and moves the watermark to the database time the poll started at.
+         * The first poll only records the watermark, as the caches read the tables themselves; rows changed around it are applied by the next poll.
+         * The watermark is not moved if a query fails, so the next poll reads the same changes again.
+         */
+        private Delta<T> poll(Timestamp now) throws SQLException {
+            Delta<T> delta = new Delta<>();
+            if (watermark == null) {
+                watermark = now;
+                return delta;
+            }
+            if (now.getTime() - watermark.getTime() > tombstoneMillis) {
+                delta.invalidated = true;
+                recentRows.clear();
+                recentTombstones.clear();
+                watermark = now;
+                return delta;
+            }
+            Timestamp since = new Timestamp(watermark.getTime() - overlapMillis);
+            long expired = System.currentTimeMillis() - appliedMillis;
+            appliedRows.values().removeIf(applied -> applied.at < expired);
+            appliedDeletes.values().removeIf(at -> at < expired);
+
+            String sql = "SELECT " + mapper.columns() + ", Last_Update FROM " + table + " WHERE Last_Update >= ?";
+            for (Map.Entry<T, Timestamp> row : JDBC.query(sql, statement -> statement.setTimestamp(1, since), result -> mapper.toEntries(result, "Last_Update", Timestamp.class))) {
+                int id = key.applyAsInt(row.getKey());
+                if (row.getValue().equals(recentRows.put(id, row.getValue()))) {
+                    continue;
+                }
+                Applied applied = appliedRows.get(id);
+                if (applied != null && applied.values.equals(values.apply(row.getKey()))) {
+                    appliedRows.remove(id);
+                    continue;
+                }
+                delta.updated.put(id, row.getKey());
+            }
+
+            if (tombstones) {
+                String byTime = "SELECT Tombstone_ID, Row_ID, Deleted_At FROM tombstones WHERE Table_Name = ? AND Deleted_At >= ?";
+                try {
+                    JDBC.query(byTime, statement -> {
+                        statement.setString(1, table);
+                        statement.setTimestamp(2, since);
+                    }, result -> {
+                        while (result.next()) {
+                            int id = result.getInt(2);
+                            if (recentTombstones.put(result.getLong(1), result.getTimestamp(3)) != null) {
+                                continue;
+                            }
+                            delta.updated.remove(id);
+                            if (appliedDeletes.remove(id) == null) {
+                                delta.removed.add(id);
+                            }
+                        }
+                        return null;
+                    });
+                } catch (SQLException e) {
+                    if (!missingTable(e)) {
+                        throw e;
+                    }
+                }
+            }
+
+            recentRows.values().removeIf(lastUpdate -> lastUpdate.before(since));
+            recentTombstones.values().removeIf(deletedAt -> deletedAt.before(since));
+            watermark = now;
+            return delta;
+        }
+    }
+
+    /**
+     * The values of a row as this client saved it, and when.
+     */
+    private static class Applied {
+        private final List<Object> values;
+        private final long at;
+
+        private Applied(List<Object> values, long at) {
+            this.values = values;
+            this.at = at;
+        }
+    }
+
+    /**
+     * The rows of one table that changed since the previous poll and the IDs that were deleted, or a note that the caches have to be reloaded.
+     * @param <T> The type of the table's rows.
+     */
+    private static class Delta<T> {
+        private final Map<Integer, T> updated = new LinkedHashMap<>();
+        private final List<Integer> removed = new ArrayList<>();
+        private boolean invalidated = false;
+
+        private void publish(Class<T> type) {
+            if (invalidated) {
+                EventBus.publish(ChangeEvent.invalidated(type));
+                return;
+            }
+            if (!updated.isEmpty()) {
+                EventBus.publish(ChangeEvent.updated(type, updated.values()));
+            }
+            if (!removed.isEmpty()) {
+                EventBus.publish(ChangeEvent.deleted(type, removed));
+            }
+        }
+    }
+}
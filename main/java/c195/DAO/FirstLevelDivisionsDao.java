@@ -1,7 +1,5 @@
 package c195.DAO;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,16 +17,14 @@ public abstract class FirstLevelDivisionsDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static List<String> firstLvlDivisions(int contId) throws SQLException {
-        List<String> divNames = new ArrayList<String>();
         String sql = "SELECT Division FROM first_level_divisions WHERE Country_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setInt(1, contId);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            divNames.add(result.getString("Division"));
-        }
-        return divNames;
+        return JDBC.query(sql, statement -> statement.setInt(1, contId), result -> {
+            List<String> divNames = new ArrayList<String>();
+            while (result.next()) {
+                divNames.add(result.getString("Division"));
+            }
+            return divNames;
+        });
     }
 
     /**
@@ -39,15 +35,13 @@ public abstract class FirstLevelDivisionsDao {
      */
     public static int countryIdByDivision(int divId) throws SQLException {
         String sql = "SELECT Country_ID FROM first_level_divisions WHERE Division_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setInt(1, divId);
-        ResultSet result = statement.executeQuery();
-
-        int country = 0;
-        while (result.next()) {
-            country = result.getInt("Country_ID");
-        }
-        return country;
+        return JDBC.query(sql, statement -> statement.setInt(1, divId), result -> {
+            int country = 0;
+            while (result.next()) {
+                country = result.getInt("Country_ID");
+            }
+            return country;
+        });
     }
 
     /**
@@ -58,15 +52,13 @@ public abstract class FirstLevelDivisionsDao {
      */
     public static String firstDivisionName(int divId) throws SQLException {
         String sql = "SELECT Division FROM first_level_divisions WHERE Division_ID = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setInt(1, divId);
-        ResultSet result = statement.executeQuery();
-
-        String division = null;
-        while (result.next()) {
-            division = result.getString("Division");
-        }
-        return division;
+        return JDBC.query(sql, statement -> statement.setInt(1, divId), result -> {
+            String division = null;
+            while (result.next()) {
+                division = result.getString("Division");
+            }
+            return division;
+        });
     }
 
     /**
@@ -77,15 +69,13 @@ public abstract class FirstLevelDivisionsDao {
      */
     public static int firstDivisionId(String divName) throws SQLException {
         String sql = "SELECT Division_ID FROM first_level_divisions WHERE Division = ?";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        statement.setString(1, divName);
-        ResultSet result = statement.executeQuery();
-
-        int divId = 0;
-        while (result.next()) {
-            divId = result.getInt("Division_ID");
-        }
-        return divId;
+        return JDBC.query(sql, statement -> statement.setString(1, divName), result -> {
+            int divId = 0;
+            while (result.next()) {
+                divId = result.getInt("Division_ID");
+            }
+            return divId;
+        });
     }
 
 }
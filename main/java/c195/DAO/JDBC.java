@@ -1,24 +1,32 @@
 package c195.DAO;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 public abstract class JDBC {
     private static final String protocol = "jdbc";
     private static final String vendor = ":mysql:";
     private static final String location = "//localhost/";
     private static final String databaseName = "client_schedule";
-    private static final String jdbcUrl = protocol + vendor + location + databaseName + "?connectionTimeZone = SERVER"; // LOCAL
+    private static final String jdbcUrl = protocol + vendor + location + databaseName + "?connectionTimeZone = SERVER&useServerPrepStmts=true&rewriteBatchedStatements=true"; // LOCAL
     private static final String driver = "com.mysql.cj.jdbc.Driver"; // Driver reference
     private static final String userName = "sqlUser"; // Username
     private static String password = "Passw0rd!"; // Password
-    public static Connection connection;  // Connection Interface
+    private static final int minPoolSize = Integer.getInteger("c195.pool.minSize", 2); // Connections kept open
+    private static final int maxPoolSize = Integer.getInteger("c195.pool.maxSize", 8); // Upper bound on open connections
+    private static final long idleTimeoutMillis = Long.getLong("c195.pool.idleTimeoutMillis", 300_000L); // Idle time before eviction
+    private static final long borrowTimeoutMillis = Long.getLong("c195.pool.borrowTimeoutMillis", 30_000L); // Wait for a free connection
+    private static final int statementCacheSize = Integer.getInteger("c195.pool.statementCacheSize", 64); // Prepared statements per connection
+    private static ConnectionPool pool;  // Connection Pool
 
     public static void openConnection()
     {
         try {
             Class.forName(driver); // Locate Driver
-            connection = DriverManager.getConnection(jdbcUrl, userName, password); // Reference Connection object
+            pool = new ConnectionPool(jdbcUrl, userName, password, minPoolSize, maxPoolSize, idleTimeoutMillis, borrowTimeoutMillis, statementCacheSize); // Open the pool
             System.out.println("Connection successful!");
         }
         catch(Exception e)
@@ -27,10 +35,148 @@ public abstract class JDBC {
         }
     }
 
+    /**
+     * Borrows a connection from the pool.
+     * Every borrowed connection must be handed back with {@link #releaseConnection(Connection)}, normally from a finally block.
+     * @return An open, validated connection.
+     * @throws SQLException If the pool has not been opened or no connection can be obtained.
+     */
+    public static Connection getConnection() throws SQLException {
+        if (pool == null) {
+            throw new SQLException("Connection pool has not been opened");
+        }
+        return pool.borrow();
+    }
+
+    /**
+     * Returns a connection borrowed with {@link #getConnection()} to the pool.
+     * @param connection The connection to return, may be null.
+     */
+    public static void releaseConnection(Connection connection) {
+        if (pool != null) {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Runs a query on a pooled connection and reads its result.
+     * The prepared statement comes from the connection's statement cache, and the result set is always closed before the connection is returned to the pool.
+     * @param sql The SQL text of the query.
+     * @param binder Sets the query parameters.
+     * @param handler Reads the result set into the returned value.
+     * @param <T> The type of value read from the result set.
+     * @return The value produced by the handler.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static <T> T query(String sql, StatementBinder binder, ResultSetHandler<T> handler) throws SQLException {
+        Connection connection = getConnection();
+        StatementCache cache = pool.statementCache(connection);
+        try {
+            PreparedStatement statement = cache.prepare(sql);
+            binder.bind(statement);
+            try (ResultSet result = statement.executeQuery()) {
+                return handler.handle(result);
+            }
+        } catch (SQLException e) {
+            cache.invalidate(sql);
+            throw e;
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Runs a query without parameters on a pooled connection and reads its result.
+     * @param sql The SQL text of the query.
+     * @param handler Reads the result set into the returned value.
+     * @param <T> The type of value read from the result set.
+     * @return The value produced by the handler.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static <T> T query(String sql, ResultSetHandler<T> handler) throws SQLException {
+        return query(sql, statement -> { }, handler);
+    }
+
+    /**
+     * Runs an insert, update or delete statement on a pooled connection.
+     * @param sql The SQL text of the statement.
+     * @param binder Sets the statement parameters.
+     * @return The number of rows effected by the statement.
+     * @throws SQLException If there is an issue executing the SQL statement.
+     */
+    public static int update(String sql, StatementBinder binder) throws SQLException {
+        Connection connection = getConnection();
+        StatementCache cache = pool.statementCache(connection);
+        try {
+            PreparedStatement statement = cache.prepare(sql);
+            binder.bind(statement);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            cache.invalidate(sql);
+            throw e;
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Runs an insert statement on a pooled connection and returns the key generated for the new row.
+     * @param sql The SQL text of the insert statement.
+     * @param binder Sets the statement parameters.
+     * @return The generated key of the inserted row, or 0 if no row was inserted.
+     * @throws SQLException If there is an issue executing the SQL statement.
+     */
+    public static int insert(String sql, StatementBinder binder) throws SQLException {
+        Connection connection = getConnection();
+        StatementCache cache = pool.statementCache(connection);
+        try {
+            PreparedStatement statement = cache.prepare(sql, Statement.RETURN_GENERATED_KEYS);
+            binder.bind(statement);
+            if (statement.executeUpdate() == 0) {
+                return 0;
+            }
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                return keys.next() ? keys.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            cache.invalidate(sql);
+            throw e;
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Runs several statements on one pooled connection as a single transaction.
+     * The transaction is committed when the call returns and rolled back if it throws, so either every statement takes effect or none does.
+     * @param call Runs the statements on the connection it is given.
+     * @param <T> The type of value returned by the call.
+     * @return The value returned by the call.
+     * @throws SQLException If a statement fails or the transaction cannot be committed.
+     */
+    public static <T> T transaction(TransactionCall<T> call) throws SQLException {
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            T value = call.run(connection);
+            connection.commit();
+            return value;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
     public static void closeConnection() {
         try {
-            connection.close();
-            System.out.println("Connection closed!");
+            pool.close();
+            System.out.println("Connection closed! Statement cache hits: " + StatementCache.hitCount() + ", misses: " + StatementCache.missCount() + ", evictions: " + StatementCache.evictionCount());
         }
         catch(Exception e)
         {
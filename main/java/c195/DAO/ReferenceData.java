@@ -0,0 +1,241 @@
+package c195.DAO;
+
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
+import c195.Model.Contact;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * This abstract class caches the reference data used by the forms and reports: countries, first-level divisions, contacts, users and customer IDs.
+ * Countries and divisions are loaded together with one joined query, and contacts and users with one combined query,
+ * into ID to name maps and a country to divisions index, so opening a form needs no database calls for its lookups.
+ * The cache is reloaded when it is older than its time to live, which defaults to 30 minutes and can be set with the
+ * {@code c195.referenceData.ttlMinutes} system property.
+ * Customer IDs change more often and are cached separately; they are discarded when customers are created or deleted, as published on the {@link EventBus}.
+ */
+public abstract class ReferenceData {
+
+    private static final long ttlMillis = Long.getLong("c195.referenceData.ttlMinutes", 30L) * 60_000L;
+    private static volatile Snapshot snapshot = null;
+    private static volatile List<Integer> customerIds = null;
+
+    static {
+        EventBus.subscribe(Customers.class, event -> {
+            if (event.getKind() != ChangeEvent.Kind.UPDATED) {
+                invalidateCustomers();
+            }
+        });
+    }
+
+    /**
+     * Loads the reference data if it is not cached yet, so the first form opened after login does not wait for it.
+     * @return true once the data is loaded.
+     * @throws SQLException If there is an issue executing the SQL queries.
+     */
+    public static boolean warmUp() throws SQLException {
+        snapshot();
+        customerIds();
+        return true;
+    }
+
+    /**
+     * Retrieves the names of all countries.
+     * @return A List of country names.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static List<String> countries() throws SQLException {
+        return new ArrayList<>(snapshot().countryIds.keySet());
+    }
+
+    /**
+     * Retrieves the name of a country from its ID.
+     * @param countryId The ID of the country.
+     * @return The name of the country, or null if there is no country with the ID.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static String countryName(int countryId) throws SQLException {
+        return snapshot().countryNames.get(countryId);
+    }
+
+    /**
+     * Retrieves the ID of a country from its name.
+     * @param countryName The name of the country.
+     * @return The ID of the country, or 0 if there is no country with the name.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static int countryId(String countryName) throws SQLException {
+        return snapshot().countryIds.getOrDefault(countryName, 0);
+    }
+
+    /**
+     * Retrieves the names of the first-level divisions of a country.
+     * @param countryId The ID of the country.
+     * @return A List of division names within the country.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static List<String> divisions(int countryId) throws SQLException {
+        return new ArrayList<>(snapshot().divisionsByCountry.getOrDefault(countryId, Collections.emptyList()));
+    }
+
+    /**
+     * Retrieves the name of a first-level division from its ID.
+     * @param divId The ID of the division.
+     * @return The name of the division, or null if there is no division with the ID.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static String divisionName(int divId) throws SQLException {
+        return snapshot().divisionNames.get(divId);
+    }
+
+    /**
+     * Retrieves the ID of a first-level division from its name.
+     * @param divName The name of the division.
+     * @return The ID of the division, or 0 if there is no division with the name.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static int divisionId(String divName) throws SQLException {
+        return snapshot().divisionIds.getOrDefault(divName, 0);
+    }
+
+    /**
+     * Retrieves the ID of the country a first-level division belongs to.
+     * @param divId The ID of the division.
+     * @return The ID of the division's country, or 0 if there is no division with the ID.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static int countryIdOfDivision(int divId) throws SQLException {
+        return snapshot().countryOfDivision.getOrDefault(divId, 0);
+    }
+
+    /**
+     * Retrieves all contacts.
+     * @return A List of contacts with their IDs and names.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static List<Contact> contacts() throws SQLException {
+        return new ArrayList<>(snapshot().contacts);
+    }
+
+    /**
+     * Retrieves the IDs of all contacts.
+     * @return A List of contact IDs.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static List<Integer> contactIds() throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (Contact contact : snapshot().contacts) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Retrieves the IDs of all users.
+     * @return A List of user IDs.
+     * @throws SQLException If the cache has to be loaded and the query fails.
+     */
+    public static List<Integer> userIds() throws SQLException {
+        return new ArrayList<>(snapshot().userIds);
+    }
+
+    /**
+     * Retrieves the IDs of all customers.
+     * @return A List of customer IDs.
+     * @throws SQLException If the customer IDs have to be loaded and the query fails.
+     */
+    public static List<Integer> customerIds() throws SQLException {
+        List<Integer> ids = customerIds;
+        if (ids == null) {
+            ids = Collections.unmodifiableList(CustomersDao.custId());
+            customerIds = ids;
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Discards the cached customer IDs after a customer is added or deleted.
+     */
+    public static void invalidateCustomers() {
+        customerIds = null;
+    }
+
+    /**
+     * Discards all cached reference data so the next lookup reloads it.
+     */
+    public static void invalidate() {
+        snapshot = null;
+        customerIds = null;
+    }
+
+    private static Snapshot snapshot() throws SQLException {
+        Snapshot current = snapshot;
+        if (current == null || System.currentTimeMillis() - current.loadedAt > ttlMillis) {
+            synchronized (ReferenceData.class) {
+                current = snapshot;
+                if (current == null || System.currentTimeMillis() - current.loadedAt > ttlMillis) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Snapshot load() throws SQLException {
+        Snapshot loaded = new Snapshot();
+
+        String geography = "SELECT c.Country_ID, c.Country, d.Division_ID, d.Division FROM countries c LEFT JOIN first_level_divisions d ON d.Country_ID = c.Country_ID ORDER BY c.Country_ID, d.Division_ID";
+        JDBC.query(geography, result -> {
+            while (result.next()) {
+                int countryId = result.getInt("Country_ID");
+                String country = result.getString("Country");
+                loaded.countryNames.put(countryId, country);
+                loaded.countryIds.put(country, countryId);
+                List<String> divisions = loaded.divisionsByCountry.computeIfAbsent(countryId, id -> new ArrayList<>());
+
+                int divId = result.getInt("Division_ID");
+                if (!result.wasNull()) {
+                    String division = result.getString("Division");
+                    loaded.divisionNames.put(divId, division);
+                    loaded.divisionIds.put(division, divId);
+                    loaded.countryOfDivision.put(divId, countryId);
+                    divisions.add(division);
+                }
+            }
+            return null;
+        });
+
+        String people = "SELECT 'C' AS Kind, Contact_ID AS ID, Contact_Name AS Name FROM contacts UNION ALL SELECT 'U', User_ID, User_Name FROM users ORDER BY Kind, ID";
+        JDBC.query(people, result -> {
+            while (result.next()) {
+                if (result.getString("Kind").equals("C")) {
+                    loaded.contacts.add(new Contact(result.getInt("ID"), result.getString("Name")));
+                } else {
+                    loaded.userIds.add(result.getInt("ID"));
+                }
+            }
+            return null;
+        });
+
+        loaded.loadedAt = System.currentTimeMillis();
+        return loaded;
+    }
+
+    /**
+     * One consistent copy of the reference data. A snapshot is never changed after it is published.
+     */
+    private static class Snapshot {
+        private final Map<Integer, String> countryNames = new HashMap<>();
+        private final Map<String, Integer> countryIds = new LinkedHashMap<>();
+        private final Map<Integer, String> divisionNames = new HashMap<>();
+        private final Map<String, Integer> divisionIds = new HashMap<>();
+        private final Map<Integer, Integer> countryOfDivision = new HashMap<>();
+        private final Map<Integer, List<String>> divisionsByCountry = new HashMap<>();
+        private final List<Contact> contacts = new ArrayList<>();
+        private final List<Integer> userIds = new ArrayList<>();
+        private long loadedAt;
+    }
+}
@@ -0,0 +1,460 @@
+package c195.DAO;
+
+import c195.Helper.EventBus;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.time.temporal.WeekFields;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This abstract class computes report figures from the {@link AppointmentColumns} snapshot on every core of the machine.
+ * A report is a set of {@link Aggregation}s computed together: the snapshot is split into chunks of a few thousand rows by a fork-join task,
+ * each chunk is folded into a partial result of every aggregation while it is in the processor cache, and the partial results are merged back up the task tree,
+ * so the whole set costs one parallel pass over the columns instead of a database round trip per figure.
+ * <p>
+ * The standard report holds the appointment counts by month and type, the minutes booked per contact per week, and the appointment counts per first-level division and per country.
+ * Reports are cached until the next appointment or customer change event on the {@link EventBus}, so the Reports page reads them from memory however often a combo box is changed.
+ * Ad-hoc sets of aggregations can be run with {@link #run(List)} and are cached the same way.
+ * Chunks are at least 4096 rows by default, which can be set with the {@code c195.reports.chunkRows} system property.
+ {@link ReportsDao} only uses the engine while the snapshot is enabled, so turning it off with {@code c195.reports.columnar} also leaves the engine unused.
+ * </p>
+ */
+public abstract class ReportEngine {
+
+    private static final int minChunkRows = Math.max(1, Integer.getInteger("c195.reports.chunkRows", 4096));
+    private static final Map<List<Aggregation<?, ?>>, Report> reports = new HashMap<>();
+    private static Context context = null;
+
+    /**
+     * Counts the appointments of every month and type combination over all years, as a map from upper case month name to a map from type to count.
+     * The month is only worked out again when a row starts past the end of the month of the row before, as the rows are in start order.
+     */
+    public static final Aggregation<?, Map<String, Map<String, Integer>>> monthTypeCounts = new Aggregation<MonthTypeCounts, Map<String, Map<String, Integer>>>() {
+        @Override
+        public MonthTypeCounts create(Context context) {
+            return new MonthTypeCounts(context.columns.dictionarySize());
+        }
+
+        @Override
+        public void add(MonthTypeCounts partial, Context context, int from, int to) {
+            AppointmentColumns columns = context.columns;
+            for (int row = from; row < to; row++) {
+                long start = columns.startSeconds(row);
+                if (start >= partial.monthEnd) {
+                    LocalDate date = LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC).toLocalDate();
+                    partial.month = date.getMonthValue() - 1;
+                    partial.monthEnd = AppointmentColumns.seconds(date.withDayOfMonth(1).plusMonths(1).atStartOfDay());
+                }
+                partial.counts[partial.month][columns.typeCode(row)]++;
+            }
+        }
+
+        @Override
+        public MonthTypeCounts merge(MonthTypeCounts left, MonthTypeCounts right) {
+            for (int month = 0; month < 12; month++) {
+                for (int code = 0; code < left.counts[month].length; code++) {
+                    left.counts[month][code] += right.counts[month][code];
+                }
+            }
+            return left;
+        }
+
+        @Override
+        public Map<String, Map<String, Integer>> finish(MonthTypeCounts partial, Context context) {
+            Map<String, Map<String, Integer>> matrix = new HashMap<>();
+            for (int month = 0; month < 12; month++) {
+                Map<String, Integer> byType = new TreeMap<>();
+                for (int code = 0; code < partial.counts[month].length; code++) {
+                    if (partial.counts[month][code] > 0) {
+                        byType.merge(context.columns.string(code), partial.counts[month][code], Integer::sum);
+                    }
+                }
+                if (!byType.isEmpty()) {
+                    matrix.put(Month.of(month + 1).name(), Collections.unmodifiableMap(byType));
+                }
+            }
+            return Collections.unmodifiableMap(matrix);
+        }
+    };
+
+    /**
+     * Adds up the minutes of the appointments of every contact by the week they start in, as a map from contact ID to a map from the first day of the week to minutes.
+     * Weeks start on the first day of the week of the default locale, as on the appointment screen.
+     * Minutes are summed in an array indexed by contact ID for as long as the rows stay in the same week, which they do for long runs as the rows are in start order.
+     */
+    public static final Aggregation<?, Map<Integer, Map<LocalDate, Long>>> contactWeekMinutes = new Aggregation<ContactWeekMinutes, Map<Integer, Map<LocalDate, Long>>>() {
+        @Override
+        public ContactWeekMinutes create(Context context) {
+            return new ContactWeekMinutes();
+        }
+
+        @Override
+        public void add(ContactWeekMinutes partial, Context context, int from, int to) {
+            AppointmentColumns columns = context.columns;
+            for (int row = from; row < to; row++) {
+                long start = columns.startSeconds(row);
+                if (start < partial.weekStart || start >= partial.weekStart + 7 * 86_400L) {
+                    partial.flush();
+                    long day = Math.floorDiv(start, 86_400L);
+                    long dayOfWeek = Math.floorMod(day + 3, 7) + 1;
+                    long firstDay = day - Math.floorMod(dayOfWeek - context.firstDayOfWeek.getValue(), 7);
+                    partial.weekStart = firstDay * 86_400L;
+                    partial.week = LocalDate.ofEpochDay(firstDay);
+                }
+                int contactId = columns.contactId(row);
+                if (contactId >= partial.minutes.length) {
+                    partial.minutes = Arrays.copyOf(partial.minutes, Math.max(contactId + 1, partial.minutes.length * 2));
+                }
+                partial.minutes[contactId] += (columns.endSeconds(row) - start) / 60;
+            }
+            partial.flush();
+        }
+
+        @Override
+        public ContactWeekMinutes merge(ContactWeekMinutes left, ContactWeekMinutes right) {
+            right.totals.forEach((contactId, weeks) -> weeks.forEach((week, minutes) ->
+                    left.totals.computeIfAbsent(contactId, id -> new TreeMap<>()).merge(week, minutes, Long::sum)));
+            return left;
+        }
+
+        @Override
+        public Map<Integer, Map<LocalDate, Long>> finish(ContactWeekMinutes partial, Context context) {
+            Map<Integer, Map<LocalDate, Long>> totals = new HashMap<>();
+            partial.totals.forEach((contactId, weeks) -> totals.put(contactId, Collections.unmodifiableMap(weeks)));
+            return Collections.unmodifiableMap(totals);
+        }
+    };
+
+    /**
+     * Counts the appointments of the customers of every first-level division, as a map from division ID to count.
+     */
+    public static final Aggregation<?, Map<Integer, Integer>> divisionCounts = new Counts() {
+        @Override
+        int[] keys(Context context) {
+            return context.divisionOfCustomer;
+        }
+    };
+
+    /**
+     * Counts the appointments of the customers of every country, as a map from country ID to count.
+     */
+    public static final Aggregation<?, Map<Integer, Integer>> countryCounts = new Counts() {
+        @Override
+        int[] keys(Context context) {
+            return context.countryOfCustomer;
+        }
+    };
+
+    /**
+     * The aggregations of the Reports page, computed together by {@link #report()}.
+     */
+    public static final List<Aggregation<?, ?>> standard = List.of(monthTypeCounts, contactWeekMinutes, divisionCounts, countryCounts);
+
+    static {
+        EventBus.subscribe(Appointments.class, event -> invalidateReports());
+        EventBus.subscribe(Customers.class, event -> invalidate());
+    }
+
+    /**
+     * Returns the standard report, computing it if the data has changed since it was last computed.
+     * @return The figures of the {@link #standard} aggregations.
+     * @throws SQLException If the snapshot or the customer divisions have to be read and the query fails.
+     */
+    public static Report report() throws SQLException {
+        return run(standard);
+    }
+
+    /**
+     * Computes a set of aggregations in one parallel pass over the current snapshot, or returns the cached figures if the data has not changed since.
+     * @param aggregations The aggregations to compute.
+     * @return The figures of every aggregation.
+     * @throws SQLException If the snapshot or the customer divisions have to be read and the query fails.
+     */
+    public static synchronized Report run(List<Aggregation<?, ?>> aggregations) throws SQLException {
+        List<Aggregation<?, ?>> key = List.copyOf(aggregations);
+        Report cached = reports.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Context current = context();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism() + 1;
+        int chunkRows = Math.max(minChunkRows, current.columns.size() / (parallelism * 4) + 1);
+        Object[] partials = ForkJoinPool.commonPool().invoke(new Scan(key, current, 0, current.columns.size(), chunkRows));
+        Map<Aggregation<?, ?>, Object> results = new HashMap<>();
+        for (int i = 0; i < key.size(); i++) {
+            results.put(key.get(i), finish(key.get(i), partials[i], current));
+        }
+        Report report = new Report(results);
+        reports.put(key, report);
+        return report;
+    }
+
+    /**
+     * Discards the cached reports and the customer divisions so the next report reads them again.
+     */
+    public static synchronized void invalidate() {
+        reports.clear();
+        context = null;
+    }
+
+    /**
+     * Discards the cached reports after an appointment change; the customer divisions are kept, and the next report picks up the merged snapshot.
+     */
+    private static synchronized void invalidateReports() {
+        reports.clear();
+    }
+
+    /**
+     * Returns the snapshot and the customer lookups of the next report, reading the customer divisions only if customers changed since.
+     */
+    private static Context context() throws SQLException {
+        AppointmentColumns columns = AppointmentColumns.current();
+        if (context == null) {
+            context = new Context(columns, CustomersDao.divisionsByCustomer());
+        } else if (context.columns != columns) {
+            context = new Context(columns, context);
+        }
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object finish(Aggregation<?, ?> aggregation, Object partial, Context context) {
+        return ((Aggregation<Object, ?>) aggregation).finish(partial, context);
+    }
+
+    /**
+     * A figure computed by the report engine: how to start a partial result for a chunk of rows, fold the chunk into it, merge two partial results and turn the last one into the figure.
+     * Partial results are only used by one thread at a time, so they need no locking; merge may reuse either of its arguments.
+     * @param <A> The type of the partial results.
+     * @param <R> The type of the figure.
+     */
+    public interface Aggregation<A, R> {
+        /**
+         * Creates an empty partial result.
+         * @param context The snapshot and lookups of the report.
+         * @return A partial result covering no rows.
+         */
+        A create(Context context);
+
+        /**
+         * Folds a chunk of rows into a partial result.
+         * @param partial The partial result of the chunk.
+         * @param context The snapshot and lookups of the report.
+         * @param from The index of the first row of the chunk.
+         * @param to The index after the last row of the chunk.
+         */
+        void add(A partial, Context context, int from, int to);
+
+        /**
+         * Merges the partial results of two neighbouring chunks, the left one before the right one.
+         * @param left The partial result of the earlier rows.
+         * @param right The partial result of the later rows.
+         * @return The partial result of both chunks.
+         */
+        A merge(A left, A right);
+
+        /**
+         * Turns the partial result of every row into the figure.
+         * @param partial The partial result of every row.
+         * @param context The snapshot and lookups of the report.
+         * @return The figure.
+         */
+        R finish(A partial, Context context);
+    }
+
+    /**
+     * The figures of one run of the report engine.
+     */
+    public static class Report {
+        private final Map<Aggregation<?, ?>, Object> results;
+
+        private Report(Map<Aggregation<?, ?>, Object> results) {
+            this.results = results;
+        }
+
+        /**
+         * Returns the figure of one aggregation of the report.
+         * @param aggregation An aggregation that was part of the run.
+         * @param <R> The type of the figure.
+         * @return The figure.
+         * @throws IllegalArgumentException If the aggregation was not part of the run.
+         */
+        @SuppressWarnings("unchecked")
+        public <R> R get(Aggregation<?, R> aggregation) {
+            if (!results.containsKey(aggregation)) {
+                throw new IllegalArgumentException("The aggregation was not part of this report.");
+            }
+            return (R) results.get(aggregation);
+        }
+    }
+
+    /**
+     * The snapshot a report is computed from, and lookups from customer ID to division and country ID by array index, 0 for an unknown customer.
+     */
+    public static class Context {
+        private final AppointmentColumns columns;
+        private final int[] divisionOfCustomer;
+        private final int[] countryOfCustomer;
+        private final DayOfWeek firstDayOfWeek = WeekFields.of(Locale.getDefault()).getFirstDayOfWeek();
+
+        private Context(AppointmentColumns columns, Map<Integer, Integer> divisions) throws SQLException {
+            this.columns = columns;
+            int length = divisions.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+            divisionOfCustomer = new int[length];
+            countryOfCustomer = new int[length];
+            Map<Integer, Integer> countryOfDivision = new HashMap<>();
+            for (Map.Entry<Integer, Integer> division : divisions.entrySet()) {
+                int divId = division.getValue();
+                Integer countryId = countryOfDivision.get(divId);
+                if (countryId == null) {
+                    countryId = ReferenceData.countryIdOfDivision(divId);
+                    countryOfDivision.put(divId, countryId);
+                }
+                if (division.getKey() >= 0) {
+                    divisionOfCustomer[division.getKey()] = divId;
+                    countryOfCustomer[division.getKey()] = countryId;
+                }
+            }
+        }
+
+        private Context(AppointmentColumns columns, Context previous) {
+            this.columns = columns;
+            this.divisionOfCustomer = previous.divisionOfCustomer;
+            this.countryOfCustomer = previous.countryOfCustomer;
+        }
+
+        /**
+         * @return The snapshot the report is computed from.
+         */
+        public AppointmentColumns getColumns() {
+            return columns;
+        }
+    }
+
+    /**
+     * Folds one chunk of rows into a partial result of every aggregation, or splits a range of rows in two and merges the partial results of both halves.
+     */
+    private static class Scan extends RecursiveTask<Object[]> {
+        private static final long serialVersionUID = 1L;
+        private final List<Aggregation<?, ?>> aggregations;
+        private final Context context;
+        private final int from;
+        private final int to;
+        private final int chunkRows;
+
+        private Scan(List<Aggregation<?, ?>> aggregations, Context context, int from, int to, int chunkRows) {
+            this.aggregations = aggregations;
+            this.context = context;
+            this.from = from;
+            this.to = to;
+            this.chunkRows = chunkRows;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Object[] compute() {
+            if (to - from <= chunkRows) {
+                Object[] partials = new Object[aggregations.size()];
+                for (int i = 0; i < partials.length; i++) {
+                    Aggregation<Object, ?> aggregation = (Aggregation<Object, ?>) aggregations.get(i);
+                    partials[i] = aggregation.create(context);
+                    aggregation.add(partials[i], context, from, to);
+                }
+                return partials;
+            }
+            int middle = (from + to) >>> 1;
+            Scan left = new Scan(aggregations, context, from, middle, chunkRows);
+            left.fork();
+            Object[] right = new Scan(aggregations, context, middle, to, chunkRows).compute();
+            Object[] partials = left.join();
+            for (int i = 0; i < partials.length; i++) {
+                partials[i] = ((Aggregation<Object, ?>) aggregations.get(i)).merge(partials[i], right[i]);
+            }
+            return partials;
+        }
+    }
+
+    /**
+     * Counts appointments by a key looked up from their customer ID, such as the customer's division or country.
+     */
+    private abstract static class Counts implements Aggregation<int[], Map<Integer, Integer>> {
+
+        abstract int[] keys(Context context);
+
+        @Override
+        public int[] create(Context context) {
+            int[] keys = keys(context);
+            return new int[Arrays.stream(keys).max().orElse(0) + 1];
+        }
+
+        @Override
+        public void add(int[] partial, Context context, int from, int to) {
+            int[] keys = keys(context);
+            AppointmentColumns columns = context.columns;
+            for (int row = from; row < to; row++) {
+                int custId = columns.customerId(row);
+                partial[custId >= 0 && custId < keys.length ? keys[custId] : 0]++;
+            }
+        }
+
+        @Override
+        public int[] merge(int[] left, int[] right) {
+            for (int key = 0; key < left.length; key++) {
+                left[key] += right[key];
+            }
+            return left;
+        }
+
+        @Override
+        public Map<Integer, Integer> finish(int[] partial, Context context) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int key = 1; key < partial.length; key++) {
+                if (partial[key] > 0) {
+                    counts.put(key, partial[key]);
+                }
+            }
+            return Collections.unmodifiableMap(counts);
+        }
+    }
+
+    /**
+     * The partial counts by month and type code of a chunk of rows, and the month of the last row seen.
+     */
+    private static class MonthTypeCounts {
+        private final int[][] counts;
+        private int month = 0;
+        private long monthEnd = Long.MIN_VALUE;
+
+        private MonthTypeCounts(int codes) {
+            counts = new int[12][codes];
+        }
+    }
+
+    /**
+     * The partial minutes by contact and week of a chunk of rows, with the minutes of the current week still in an array indexed by contact ID.
+     */
+    private static class ContactWeekMinutes {
+        private final Map<Integer, Map<LocalDate, Long>> totals = new HashMap<>();
+        private long[] minutes = new long[16];
+        private long weekStart = Long.MIN_VALUE / 2;
+        private LocalDate week;
+
+        private void flush() {
+            for (int contactId = 0; contactId < minutes.length; contactId++) {
+                if (minutes[contactId] != 0) {
+                    totals.computeIfAbsent(contactId, id -> new TreeMap<>()).merge(week, minutes[contactId], Long::sum);
+                    minutes[contactId] = 0;
+                }
+            }
+        }
+    }
+}
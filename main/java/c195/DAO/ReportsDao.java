@@ -0,0 +1,224 @@
+package c195.DAO;
+
+import c195.Helper.ChangeEvent;
+import c195.Helper.EventBus;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.TemporalAdjusters;
+import java.time.temporal.WeekFields;
+import java.util.*;
+
+/**
+ * This abstract class serves as a data access object (DAO) for the aggregated figures shown on the Reports page.
+ * The figures are computed together by {@link ReportEngine} in one parallel pass over the {@link AppointmentColumns} snapshot and cached until the data changes,
+ * and handed to the view as one {@link Figures} object computed in the background, so the report combo boxes read from memory on the FX thread instead of querying on every selection.
+ * When the {@code c195.reports.columnar} system property is false, no snapshot is built and every figure is computed by the database instead, each with one GROUP BY query,
+ * and kept until the next appointment change event on the {@link EventBus}, or until customers, and so their appointments, are deleted.
+ * The database works out months and days in its session time zone, where the snapshot uses the times as the application shows them.
+ */
+public abstract class ReportsDao {
+
+    private static Map<String, Map<String, Integer>> monthTypeCounts = null;
+    private static Figures queriedFigures = null;
+
+    static {
+        EventBus.subscribe(Appointments.class, event -> invalidate());
+        EventBus.subscribe(Customers.class, event -> {
+            if (event.getKind() == ChangeEvent.Kind.DELETED) {
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Returns the number of appointments for every month and type combination.
+     * The matrix is computed on first use and reused until the appointments change.
+     * @return A map from upper case month name, as in {@link Month#name()}, to a map from appointment type to the number of appointments.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static Map<String, Map<String, Integer>> monthTypeCounts() throws SQLException {
+        if (AppointmentColumns.enabled()) {
+            return ReportEngine.report().get(ReportEngine.monthTypeCounts);
+        }
+        return queryMonthTypeCounts();
+    }
+
+    /**
+     * Returns all the figures of the Reports page at once, for a view to compute in the background and read on the FX thread.
+     * @return The figures of the {@link ReportEngine} report, or of the database if the snapshot is turned off, as they are now.
+     * @throws SQLException If the figures have to be computed and a query fails.
+     */
+    public static Figures figures() throws SQLException {
+        if (!AppointmentColumns.enabled()) {
+            return queryFigures();
+        }
+        ReportEngine.Report report = ReportEngine.report();
+        return new Figures(report.get(ReportEngine.monthTypeCounts), report.get(ReportEngine.contactWeekMinutes),
+                report.get(ReportEngine.divisionCounts), report.get(ReportEngine.countryCounts));
+    }
+
+    /**
+     * Retrieves the distinct appointment types scheduled in a month, in alphabetical order.
+     * @param month The month name, in any letter case.
+     * @return A List of the appointment types found in the month.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static List<String> types(String month) throws SQLException {
+        return types(monthTypeCounts(), month);
+    }
+
+    /**
+     * Returns the number of appointments of a type in a month.
+     * @param month The month name, in any letter case.
+     * @param type The appointment type.
+     * @return The number of matching appointments, or 0 if there are none.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static int count(String month, String type) throws SQLException {
+        return count(monthTypeCounts(), month, type);
+    }
+
+    /**
+     * Discards the figures read from the database so the next request reads them again. The figures of {@link ReportEngine} are discarded by the engine itself.
+     */
+    public static synchronized void invalidate() {
+        monthTypeCounts = null;
+        queriedFigures = null;
+    }
+
+    /**
+     * Reads every figure of the Reports page from the database, for when the snapshot is turned off.
+     * The minutes of each contact are summed by day in the database and added up by week here, with weeks starting on the first day of the week of the default locale as on the appointment screen.
+     */
+    private static synchronized Figures queryFigures() throws SQLException {
+        if (queriedFigures == null) {
+            DayOfWeek firstDayOfWeek = WeekFields.of(Locale.getDefault()).getFirstDayOfWeek();
+            String minutesSql = "SELECT Contact_ID, DATE(Start) AS Day, SUM(TIMESTAMPDIFF(MINUTE, Start, End)) AS Minutes FROM appointments GROUP BY Contact_ID, DATE(Start)";
+            Map<Integer, Map<LocalDate, Long>> contactWeekMinutes = JDBC.query(minutesSql, result -> {
+                Map<Integer, Map<LocalDate, Long>> totals = new HashMap<>();
+                while (result.next()) {
+                    LocalDate week = result.getDate("Day").toLocalDate().with(TemporalAdjusters.previousOrSame(firstDayOfWeek));
+                    totals.computeIfAbsent(result.getInt("Contact_ID"), id -> new TreeMap<>()).merge(week, result.getLong("Minutes"), Long::sum);
+                }
+                totals.replaceAll((contId, weeks) -> Collections.unmodifiableMap(weeks));
+                return Collections.unmodifiableMap(totals);
+            });
+            String divisionSql = "SELECT c.Division_ID AS Id, COUNT(*) AS Total FROM appointments a JOIN customers c ON c.Customer_ID = a.Customer_ID GROUP BY c.Division_ID";
+            String countrySql = "SELECT d.Country_ID AS Id, COUNT(*) AS Total FROM appointments a JOIN customers c ON c.Customer_ID = a.Customer_ID"
+                    + " JOIN first_level_divisions d ON d.Division_ID = c.Division_ID GROUP BY d.Country_ID";
+            queriedFigures = new Figures(queryMonthTypeCounts(), contactWeekMinutes, queryCounts(divisionSql), queryCounts(countrySql));
+        }
+        return queriedFigures;
+    }
+
+    private static Map<Integer, Integer> queryCounts(String sql) throws SQLException {
+        return JDBC.query(sql, result -> {
+            Map<Integer, Integer> counts = new HashMap<>();
+            while (result.next()) {
+                counts.put(result.getInt("Id"), result.getInt("Total"));
+            }
+            return Collections.unmodifiableMap(counts);
+        });
+    }
+
+    private static synchronized Map<String, Map<String, Integer>> queryMonthTypeCounts() throws SQLException {
+        if (monthTypeCounts == null) {
+            String sql = "SELECT MONTH(Start) AS Month, Type, COUNT(*) AS Total FROM appointments GROUP BY MONTH(Start), Type";
+            monthTypeCounts = JDBC.query(sql, result -> {
+                Map<String, Map<String, Integer>> matrix = new HashMap<>();
+                while (result.next()) {
+                    String month = Month.of(result.getInt("Month")).name();
+                    matrix.computeIfAbsent(month, key -> new TreeMap<>()).merge(result.getString("Type"), result.getInt("Total"), Integer::sum);
+                }
+                matrix.replaceAll((month, types) -> Collections.unmodifiableMap(types));
+                return Collections.unmodifiableMap(matrix);
+            });
+        }
+        return monthTypeCounts;
+    }
+
+    private static List<String> types(Map<String, Map<String, Integer>> matrix, String month) {
+        if (month == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(matrix.getOrDefault(month.toUpperCase(), Collections.emptyMap()).keySet());
+    }
+
+    private static int count(Map<String, Map<String, Integer>> matrix, String month, String type) {
+        if (month == null || type == null) {
+            return 0;
+        }
+        return matrix.getOrDefault(month.toUpperCase(), Collections.emptyMap()).getOrDefault(type, 0);
+    }
+
+    /**
+     * The figures of the Reports page at one point in time. They are computed in the background by {@link #figures()} and never change afterwards,
+     * so a view can read them on the FX thread without a query or a lock.
+     */
+    public static class Figures {
+        private final Map<String, Map<String, Integer>> monthTypeCounts;
+        private final Map<Integer, Map<LocalDate, Long>> contactWeekMinutes;
+        private final Map<Integer, Integer> divisionCounts;
+        private final Map<Integer, Integer> countryCounts;
+
+        private Figures(Map<String, Map<String, Integer>> monthTypeCounts, Map<Integer, Map<LocalDate, Long>> contactWeekMinutes,
+                        Map<Integer, Integer> divisionCounts, Map<Integer, Integer> countryCounts) {
+            this.monthTypeCounts = monthTypeCounts;
+            this.contactWeekMinutes = contactWeekMinutes;
+            this.divisionCounts = divisionCounts;
+            this.countryCounts = countryCounts;
+        }
+
+        /**
+         * Returns the distinct appointment types scheduled in a month, in alphabetical order.
+         * @param month The month name, in any letter case.
+         * @return A List of the appointment types found in the month.
+         */
+        public List<String> types(String month) {
+            return ReportsDao.types(monthTypeCounts, month);
+        }
+
+        /**
+         * Returns the number of appointments of a type in a month.
+         * @param month The month name, in any letter case.
+         * @param type The appointment type.
+         * @return The number of matching appointments, or 0 if there are none.
+         */
+        public int count(String month, String type) {
+            return ReportsDao.count(monthTypeCounts, month, type);
+        }
+
+        /**
+         * Returns the number of minutes booked for a contact in a week.
+         * @param contId The ID of the contact.
+         * @param weekStart The first day of the week, as given by {@link c195.Helper.DateTimeFormat#startOfWeek()}.
+         * @return The total length of the contact's appointments starting in the week, in minutes.
+         */
+        public long contactMinutes(int contId, LocalDate weekStart) {
+            return contactWeekMinutes.getOrDefault(contId, Collections.emptyMap()).getOrDefault(weekStart, 0L);
+        }
+
+        /**
+         * Returns the number of appointments of the customers of a first-level division.
+         * @param divId The ID of the division.
+         * @return The number of appointments, or 0 if there are none.
+         */
+        public int divisionCount(int divId) {
+            return divisionCounts.getOrDefault(divId, 0);
+        }
+
+        /**
+         * Returns the number of appointments of the customers of a country.
+         * @param countryId The ID of the country.
+         * @return The number of appointments, or 0 if there are none.
+         */
+        public int countryCount(int countryId) {
+            return countryCounts.getOrDefault(countryId, 0);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package c195.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This functional interface is designed for <b>lambda</b> expressions that read the rows of a query result into a value.
+ * The result set is opened and closed by {@link JDBC}, so implementations only read from it and must not keep a reference to it.
+ * @param <T> The type of value produced from the result set.
+ */
+@FunctionalInterface
+public interface ResultSetHandler<T> {
+    /**
+     * Reads the result set into a value.
+     * @param result The result set positioned before its first row.
+     * @return The value built from the result set.
+     * @throws SQLException If a column cannot be read.
+     */
+    T handle(ResultSet result) throws SQLException;
+
+}
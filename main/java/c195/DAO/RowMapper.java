@@ -0,0 +1,121 @@
+package c195.DAO;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class maps the rows of a query to objects using a fixed list of columns.
+ * The column indexes are looked up once per query instead of by name on every row,
+ * and {@link #columns()} gives the projection to select so queries fetch only the columns the mapper reads.
+ * @param <T> The type of object built from a row.
+ */
+public class RowMapper<T> {
+
+    private final String[] columns;
+    private final String selectList;
+    private final RowReader<T> reader;
+
+    /**
+     * Creates a row mapper.
+     * @param reader Builds an object from a row, reading the columns by the resolved indexes.
+     * @param columns The names of the columns the reader uses, in the order of the index array passed to it.
+     */
+    public RowMapper(RowReader<T> reader, String... columns) {
+        this.reader = reader;
+        this.columns = columns.clone();
+        this.selectList = String.join(", ", columns);
+    }
+
+    /**
+     * Returns the mapper's columns as a comma separated list for the SELECT clause.
+     * @return The select list of the mapper's columns.
+     */
+    public String columns() {
+        return selectList;
+    }
+
+    /**
+     * Reads every row of a result set into an observable list.
+     * @param result The result set positioned before its first row.
+     * @return An ObservableList of the mapped rows.
+     * @throws SQLException If a column is missing or cannot be read.
+     */
+    public ObservableList<T> toObservableList(ResultSet result) throws SQLException {
+        ObservableList<T> rows = FXCollections.observableArrayList();
+        readInto(result, rows);
+        return rows;
+    }
+
+    /**
+     * Reads every row of a result set into a list.
+     * @param result The result set positioned before its first row.
+     * @return A List of the mapped rows.
+     * @throws SQLException If a column is missing or cannot be read.
+     */
+    public List<T> toList(ResultSet result) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        readInto(result, rows);
+        return rows;
+    }
+
+    /**
+     * Reads every row of a result set together with the value of one more column selected after the mapper's own, such as the time the row was last updated.
+     * @param result The result set positioned before its first row.
+     * @param column The name of the extra column.
+     * @param type The type to read the extra column as.
+     * @param <V> The type of the extra column's values.
+     * @return A List of the mapped rows, each paired with its value of the extra column.
+     * @throws SQLException If a column is missing or cannot be read.
+     */
+    public <V> List<Map.Entry<T, V>> toEntries(ResultSet result, String column, Class<V> type) throws SQLException {
+        List<Map.Entry<T, V>> rows = new ArrayList<>();
+        int[] columns = null;
+        int extra = 0;
+        while (result.next()) {
+            if (columns == null) {
+                columns = resolve(result);
+                extra = result.findColumn(column);
+            }
+            rows.add(new AbstractMap.SimpleImmutableEntry<>(reader.read(result, columns), result.getObject(extra, type)));
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the first row of a result set.
+     * @param result The result set positioned before its first row.
+     * @return The mapped first row, or null if the result set is empty.
+     * @throws SQLException If a column is missing or cannot be read.
+     */
+    public T first(ResultSet result) throws SQLException {
+        if (!result.next()) {
+            return null;
+        }
+        return reader.read(result, resolve(result));
+    }
+
+    private void readInto(ResultSet result, List<T> rows) throws SQLException {
+        int[] column = null;
+        while (result.next()) {
+            if (column == null) {
+                column = resolve(result);
+            }
+            rows.add(reader.read(result, column));
+        }
+    }
+
+    private int[] resolve(ResultSet result) throws SQLException {
+        int[] column = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            column[i] = result.findColumn(columns[i]);
+        }
+        return column;
+    }
+}
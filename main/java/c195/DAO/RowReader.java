@@ -0,0 +1,22 @@
+package c195.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This functional interface is designed for <b>lambda</b> expressions that build one object from the current row of a result set.
+ * Columns are read by the indexes {@link RowMapper} resolved once for the query, in the order the mapper's columns were declared.
+ * @param <T> The type of object built from a row.
+ */
+@FunctionalInterface
+public interface RowReader<T> {
+    /**
+     * Builds an object from the current row.
+     * @param result The result set positioned on the row to read.
+     * @param column The result set index of each of the mapper's columns, in declaration order.
+     * @return The object built from the row.
+     * @throws SQLException If a column cannot be read.
+     */
+    T read(ResultSet result, int[] column) throws SQLException;
+
+}
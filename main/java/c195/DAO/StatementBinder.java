@@ -0,0 +1,19 @@
+package c195.DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * This functional interface is designed for <b>lambda</b> expressions that set the parameters of a prepared statement before it is executed.
+ * It lets the DAOs describe only their parameters while {@link JDBC} manages the connection, the cached statement and its cleanup.
+ */
+@FunctionalInterface
+public interface StatementBinder {
+    /**
+     * Binds the parameters of the SQL statement.
+     * @param statement The prepared statement whose parameters are to be set.
+     * @throws SQLException If a parameter cannot be set.
+     */
+    void bind(PreparedStatement statement) throws SQLException;
+
+}
@@ -0,0 +1,139 @@
+package c195.DAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps the prepared statements of one pooled connection, keyed by their SQL text, so repeated queries skip the prepare step.
+ * The least recently used statement is closed when the cache grows past its capacity.
+ * Hit, miss and eviction counters are shared by every cache so the overall effectiveness can be reported.
+ */
+public class StatementCache {
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    /**
+     * Creates an empty statement cache for a connection.
+     * @param connection The connection the statements are prepared on.
+     * @param capacity The maximum number of statements kept open.
+     */
+    public StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    evictions.increment();
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the SQL text, preparing and caching it on first use.
+     * The statement's parameters are cleared so it can be bound again.
+     * @param sql The SQL text of the statement.
+     * @return A prepared statement ready to be bound.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns the cached statement for the SQL text, preparing it with the given generated keys setting on first use.
+     * The same SQL text should always be prepared with the same setting.
+     * @param sql The SQL text of the statement.
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}.
+     * @return A prepared statement ready to be bound.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits.increment();
+            statement.clearParameters();
+            return statement;
+        }
+        misses.increment();
+        statement = connection.prepareStatement(sql, autoGeneratedKeys);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes and removes the statement for the SQL text, used when executing it failed and it may no longer be usable.
+     * @param sql The SQL text of the statement.
+     */
+    public void invalidate(String sql) {
+        PreparedStatement statement = statements.remove(sql);
+        if (statement != null) {
+            closeQuietly(statement);
+        }
+    }
+
+    /**
+     * Closes every cached statement.
+     */
+    public void close() {
+        List<PreparedStatement> open = new ArrayList<>(statements.values());
+        statements.clear();
+        for (PreparedStatement statement : open) {
+            closeQuietly(statement);
+        }
+    }
+
+    /**
+     * Returns the number of statements currently cached.
+     * @return The number of cached statements.
+     */
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Returns how many times a cached statement was reused, across all connections.
+     * @return The total number of cache hits.
+     */
+    public static long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many times a statement had to be prepared, across all connections.
+     * @return The total number of cache misses.
+     */
+    public static long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns how many statements were closed to make room for newer ones, across all connections.
+     * @return The total number of evictions.
+     */
+    public static long evictionCount() {
+        return evictions.sum();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
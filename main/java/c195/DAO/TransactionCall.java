@@ -0,0 +1,22 @@
+package c195.DAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * This functional interface is designed for <b>lambda</b> expressions that run several statements as one transaction.
+ * {@link JDBC#transaction(TransactionCall)} hands the lambda a pooled connection with auto-commit turned off,
+ * commits when the lambda returns and rolls back if it throws.
+ * @param <T> The type of value returned by the transaction.
+ */
+@FunctionalInterface
+public interface TransactionCall<T> {
+    /**
+     * Runs the statements of the transaction.
+     * @param connection The connection the statements must be run on.
+     * @return The value returned by the transaction.
+     * @throws SQLException If a statement fails; the transaction is then rolled back.
+     */
+    T run(Connection connection) throws SQLException;
+
+}
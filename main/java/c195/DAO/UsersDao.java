@@ -2,8 +2,6 @@ package c195.DAO;
 
 import c195.Model.Users;
 
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -24,18 +22,19 @@ public abstract class UsersDao {
     public static Users Validation(String userName, String password){
         try{
             String sql = "SELECT User_Name, Password FROM client_schedule.users WHERE User_Name = ? AND Password = ?";
-            PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-            statement.setString(1, userName);
-            statement.setString(2, password);
-            ResultSet result = statement.executeQuery();
-            if (result.next()){
-                Users current = new Users(result.getString("User_Name"));
-                System.out.println("Successful Login!");
-                return current;
-            } else{
-                System.out.println("Failed Login!");
-                return null;
-            }
+            return JDBC.query(sql, statement -> {
+                statement.setString(1, userName);
+                statement.setString(2, password);
+            }, result -> {
+                if (result.next()){
+                    Users current = new Users(result.getString("User_Name"));
+                    System.out.println("Successful Login!");
+                    return current;
+                } else{
+                    System.out.println("Failed Login!");
+                    return null;
+                }
+            });
         } catch (SQLException throwable){
             throwable.printStackTrace();
             return null;
@@ -48,15 +47,14 @@ public abstract class UsersDao {
      * @throws SQLException If there is an issue executing the SQL query.
      */
     public static List<Integer> userId() throws SQLException {
-        List<Integer> listOfUserIds = new ArrayList<Integer>();
-        String sql = "SELECT * FROM users";
-        PreparedStatement statement = JDBC.connection.prepareStatement(sql);
-        ResultSet result = statement.executeQuery();
-
-        while (result.next()) {
-            listOfUserIds.add(result.getInt("User_ID"));
-        }
-        return listOfUserIds;
+        String sql = "SELECT User_ID FROM users";
+        return JDBC.query(sql, result -> {
+            List<Integer> listOfUserIds = new ArrayList<Integer>();
+            while (result.next()) {
+                listOfUserIds.add(result.getInt("User_ID"));
+            }
+            return listOfUserIds;
+        });
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,165 @@
+package c195.Helper;
+
+import c195.DAO.AppointmentsDao;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * This helper class keeps an in-memory {@link IntervalTree} of appointment times for every customer and contact,
+ * so overlap checks are answered from memory instead of reloading the customer's appointments on every save.
+ * The index is loaded from the database on first use and is kept in sync by the appointment and customer change events on the {@link EventBus}.
+ */
+public class AppointmentIndex {
+
+    private static final Map<Integer, Appointments> appointmentsById = new HashMap<>();
+    private static final Map<Integer, IntervalTree> byCustomer = new HashMap<>();
+    private static final Map<Integer, IntervalTree> byContact = new HashMap<>();
+    private static boolean loaded = false;
+
+    static {
+        EventBus.subscribe(Appointments.class, AppointmentIndex::onAppointments);
+        EventBus.subscribe(Customers.class, event -> {
+            if (event.getKind() == ChangeEvent.Kind.DELETED) {
+                removeCustomers(event.getIds());
+            }
+        });
+    }
+
+    /**
+     * Checks whether an appointment time overlaps another appointment of the same customer.
+     * @param starting The start time of the appointment being checked.
+     * @param ending The end time of the appointment being checked.
+     * @param custId The customer ID to check.
+     * @param apptId The appointment ID to exclude from the check (for appointment updates), or -1.
+     * @return true if an overlap is found; false otherwise.
+     * @throws SQLException If the index has to be loaded and the query fails.
+     */
+    public static synchronized boolean customerOverlap(LocalDateTime starting, LocalDateTime ending, int custId, int apptId) throws SQLException {
+        return overlaps(byCustomer, custId, starting, ending, apptId);
+    }
+
+    /**
+     * Checks whether an appointment time overlaps another appointment of the same contact.
+     * @param starting The start time of the appointment being checked.
+     * @param ending The end time of the appointment being checked.
+     * @param contId The contact ID to check.
+     * @param apptId The appointment ID to exclude from the check (for appointment updates), or -1.
+     * @return true if an overlap is found; false otherwise.
+     * @throws SQLException If the index has to be loaded and the query fails.
+     */
+    public static synchronized boolean contactOverlap(LocalDateTime starting, LocalDateTime ending, int contId, int apptId) throws SQLException {
+        return overlaps(byContact, contId, starting, ending, apptId);
+    }
+
+    /**
+     * Records a newly added appointment, or replaces an existing one with the same ID.
+     * Has no effect until the index has been loaded, since the load reads the appointment from the database anyway.
+     * @param appointment The appointment that was saved.
+     */
+    public static synchronized void put(Appointments appointment) {
+        if (!loaded) {
+            return;
+        }
+        remove(appointment.getAppId());
+        add(appointment);
+    }
+
+    /**
+     * Removes a deleted appointment from the index.
+     * @param appId The ID of the deleted appointment.
+     */
+    public static synchronized void remove(int appId) {
+        Appointments previous = appointmentsById.remove(appId);
+        if (previous == null) {
+            return;
+        }
+        long start = seconds(previous.getBegin());
+        removeFrom(byCustomer, previous.getCustId(), appId, start);
+        removeFrom(byContact, previous.getContId(), appId, start);
+    }
+
+    /**
+     * Removes every appointment of deleted customers from the index.
+     * @param custIds The IDs of the deleted customers.
+     */
+    public static synchronized void removeCustomers(Collection<Integer> custIds) {
+        Set<Integer> customers = new HashSet<>(custIds);
+        List<Integer> appIds = new ArrayList<>();
+        for (Appointments appointment : appointmentsById.values()) {
+            if (customers.contains(appointment.getCustId())) {
+                appIds.add(appointment.getAppId());
+            }
+        }
+        for (int appId : appIds) {
+            remove(appId);
+        }
+    }
+
+    /**
+     * Discards the index so the next overlap check reloads it from the database.
+     */
+    public static synchronized void invalidate() {
+        appointmentsById.clear();
+        byCustomer.clear();
+        byContact.clear();
+        loaded = false;
+    }
+
+    private static synchronized void onAppointments(ChangeEvent<Appointments> event) {
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                for (Appointments appointment : event.getEntities()) {
+                    put(appointment);
+                }
+                break;
+            case DELETED:
+                for (int appId : event.getIds()) {
+                    remove(appId);
+                }
+                break;
+            default:
+                invalidate();
+        }
+    }
+
+    private static boolean overlaps(Map<Integer, IntervalTree> trees, int key, LocalDateTime starting, LocalDateTime ending, int apptId) throws SQLException {
+        load();
+        IntervalTree tree = trees.get(key);
+        return tree != null && tree.overlaps(seconds(starting), seconds(ending), apptId);
+    }
+
+    private static void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        for (Appointments appointment : AppointmentsDao.selectAppointmentTimes()) {
+            add(appointment);
+        }
+        loaded = true;
+    }
+
+    private static void add(Appointments appointment) {
+        appointmentsById.put(appointment.getAppId(), appointment);
+        long start = seconds(appointment.getBegin());
+        long end = seconds(appointment.getEnd());
+        byCustomer.computeIfAbsent(appointment.getCustId(), id -> new IntervalTree()).insert(appointment.getAppId(), start, end);
+        byContact.computeIfAbsent(appointment.getContId(), id -> new IntervalTree()).insert(appointment.getAppId(), start, end);
+    }
+
+    private static void removeFrom(Map<Integer, IntervalTree> trees, int key, int appId, long start) {
+        IntervalTree tree = trees.get(key);
+        if (tree != null && tree.remove(appId, start) && tree.isEmpty()) {
+            trees.remove(key);
+        }
+    }
+
+    private static long seconds(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,405 @@
+package c195.Helper;
+
+import c195.DAO.AppointmentsDao;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * This helper class keeps an in-memory inverted index of the words in the title, description, location and type of every appointment,
+ * so searching the appointments is a few map lookups instead of a {@code LIKE '%word%'} scan of the appointments table.
+ * Words are split on anything that is not a letter or digit, lower-cased and stripped of accents, so "R&eacute;union" is found by "reunion".
+ * Each query word matches every indexed word it starts, and an appointment is a hit only if it matches all the query words.
+ * <p>
+ * Hits are ranked by the fields a word was found in, a title match counting most and a description match least, by how rare the word is,
+ * and by whether the query word matched a whole word or only its start. The query word with the fewest postings is looked up first,
+ * and the others only narrow its hits down, so a search costs about as much as its rarest word.
+ * Scores are summed in arrays indexed by appointment ID and reused from search to search, each entry stamped with the search that wrote it,
+ * so nothing is boxed or cleared however many appointments a word is in.
+ * </p>
+ * <p>
+ * The index is read a page at a time on first use and is kept in sync by the appointment and customer change events on the {@link EventBus}.
+ * </p>
+ */
+public class AppointmentSearch {
+
+    private static final int title = 1;
+    private static final int description = 2;
+    private static final int location = 4;
+    private static final int type = 8;
+    private static final double[] fieldWeights = fieldWeights();
+    private static final double prefixWeight = 0.5;
+    private static final int pageSize = Math.max(1, Integer.getInteger("c195.store.pageSize", 1000));
+    private static final Pattern separators = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern accents = Pattern.compile("\\p{M}+");
+
+    private static final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private static final Map<Integer, Document> documents = new HashMap<>();
+    private static int maxId = 0;
+    private static boolean loaded = false;
+
+    private static int[] stamps = new int[0];
+    private static double[] scores = new double[0];
+    private static double[] wordScores = new double[0];
+    private static int generation = 0;
+
+    static {
+        EventBus.subscribe(Appointments.class, AppointmentSearch::onAppointments);
+        EventBus.subscribe(Customers.class, event -> {
+            if (event.getKind() == ChangeEvent.Kind.DELETED) {
+                removeCustomers(event.getIds());
+            }
+        });
+    }
+
+    /**
+     * Finds the appointments whose title, description, location or type contain a word starting with each word of a query.
+     * @param query The words to search for, in any order and case.
+     * @param limit The maximum number of hits to return.
+     * @return The IDs of the best matching appointments, best first; empty if the query has no words.
+     * @throws SQLException If the index has to be loaded and the query fails.
+     */
+    public static synchronized List<Integer> search(String query, int limit) throws SQLException {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokens(query)));
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        load();
+
+        List<Match> matches = new ArrayList<>();
+        for (String word : words) {
+            Match match = new Match(word, terms.subMap(word, true, word + Character.MAX_VALUE, false));
+            if (match.postings == 0) {
+                return new ArrayList<>();
+            }
+            matches.add(match);
+        }
+        matches.sort(Comparator.comparingLong(match -> match.postings));
+
+        if (stamps.length <= maxId) {
+            int length = Math.max(maxId + 1, stamps.length * 2);
+            stamps = Arrays.copyOf(stamps, length);
+            scores = Arrays.copyOf(scores, length);
+            wordScores = Arrays.copyOf(wordScores, length);
+        }
+        int[] hits = null;
+        int count = 0;
+        for (Match match : matches) {
+            int previous = generation;
+            int current = nextGeneration();
+            if (hits == null) {
+                hits = new int[(int) Math.min(match.postings, documents.size())];
+                count = walk(match, previous, current, hits, true);
+            } else if ((long) count * match.terms.size() * (Long.SIZE - Long.numberOfLeadingZeros(match.postings)) < match.postings) {
+                count = probe(match, current, hits, count);
+            } else {
+                count = walk(match, previous, current, hits, false);
+            }
+            if (count == 0) {
+                return new ArrayList<>();
+            }
+        }
+        return best(hits, count, limit);
+    }
+
+    /**
+     * Discards the index so the next search reloads it from the database.
+     */
+    public static synchronized void invalidate() {
+        terms.clear();
+        documents.clear();
+        maxId = 0;
+        loaded = false;
+    }
+
+    /**
+     * Splits text into the words the index holds: runs of letters and digits, lower-cased and without accents.
+     * @param text The text to split; may be null.
+     * @return The words of the text, in order.
+     */
+    static List<String> tokens(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String plain = accents.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        for (String word : separators.split(plain)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Walks the postings of every word a query word starts, scoring each appointment by its best matching word.
+     * For the first query word every appointment found is a hit; for the others, only the hits so far that are found again are kept.
+     * @return The number of hits now at the start of the hits array.
+     */
+    private static int walk(Match match, int previous, int current, int[] hits, boolean first) {
+        int count = 0;
+        for (Map.Entry<String, Postings> term : match.terms.entrySet()) {
+            Postings postings = term.getValue();
+            double weight = weight(match.word, term.getKey(), postings);
+            for (int i = 0; i < postings.size; i++) {
+                int id = postings.ids[i];
+                double score = weight * fieldWeights[postings.fields[i]];
+                if (stamps[id] == current) {
+                    wordScores[id] = Math.max(wordScores[id], score);
+                } else if (first || stamps[id] == previous) {
+                    if (first) {
+                        scores[id] = 0;
+                    }
+                    stamps[id] = current;
+                    wordScores[id] = score;
+                    hits[count++] = id;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            scores[hits[i]] += wordScores[hits[i]];
+        }
+        return count;
+    }
+
+    /**
+     * Looks each hit so far up in the postings of the words a query word starts, for when binary searching for every hit costs less than walking the postings.
+     * @return The number of hits kept at the start of the hits array.
+     */
+    private static int probe(Match match, int current, int[] hits, int count) {
+        int kept = 0;
+        for (int h = 0; h < count; h++) {
+            int id = hits[h];
+            double best = 0;
+            for (Map.Entry<String, Postings> term : match.terms.entrySet()) {
+                int fields = term.getValue().fieldsOf(id);
+                if (fields > 0) {
+                    best = Math.max(best, weight(match.word, term.getKey(), term.getValue()) * fieldWeights[fields]);
+                }
+            }
+            if (best > 0) {
+                stamps[id] = current;
+                scores[id] += best;
+                hits[kept++] = id;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Picks the highest scoring hits with a bounded heap, ties going to the lower appointment ID.
+     */
+    private static List<Integer> best(int[] hits, int count, int limit) {
+        Comparator<Integer> ranking = Comparator.<Integer>comparingDouble(id -> -scores[id]).thenComparingInt(id -> id);
+        PriorityQueue<Integer> top = new PriorityQueue<>(ranking.reversed());
+        for (int i = 0; i < count; i++) {
+            int id = hits[i];
+            if (top.size() < limit) {
+                top.add(id);
+            } else if (ranking.compare(id, top.peek()) < 0) {
+                top.poll();
+                top.add(id);
+            }
+        }
+        List<Integer> ids = new ArrayList<>(top);
+        ids.sort(ranking);
+        return ids;
+    }
+
+    /**
+     * Starts a new generation of stamps, so the scores of earlier searches need not be cleared.
+     */
+    private static int nextGeneration() {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 0;
+        }
+        return ++generation;
+    }
+
+    /**
+     * Weighs a matched word by its rarity, halved when the query word is only the start of it.
+     */
+    private static double weight(String word, String term, Postings postings) {
+        double rarity = Math.log(1.0 + (double) documents.size() / postings.size);
+        return word.length() == term.length() ? rarity : rarity * prefixWeight;
+    }
+
+    private static synchronized void onAppointments(ChangeEvent<Appointments> event) {
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                if (loaded) {
+                    for (Appointments appointment : event.getEntities()) {
+                        remove(appointment.getAppId());
+                        add(appointment);
+                    }
+                }
+                break;
+            case DELETED:
+                for (int appId : event.getIds()) {
+                    remove(appId);
+                }
+                break;
+            default:
+                invalidate();
+        }
+    }
+
+    private static synchronized void removeCustomers(Collection<Integer> custIds) {
+        Set<Integer> customers = new HashSet<>(custIds);
+        List<Integer> appIds = new ArrayList<>();
+        for (Map.Entry<Integer, Document> document : documents.entrySet()) {
+            if (customers.contains(document.getValue().custId)) {
+                appIds.add(document.getKey());
+            }
+        }
+        for (int appId : appIds) {
+            remove(appId);
+        }
+    }
+
+    private static void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        int afterId = 0;
+        while (true) {
+            List<Appointments> page = AppointmentsDao.selectAppointmentsPage(afterId, pageSize);
+            for (Appointments appointment : page) {
+                add(appointment);
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getAppId();
+        }
+        loaded = true;
+    }
+
+    private static void add(Appointments appointment) {
+        Map<String, Integer> fields = new HashMap<>();
+        addField(fields, appointment.getTitle(), title);
+        addField(fields, appointment.getDescription(), description);
+        addField(fields, appointment.getLocation(), location);
+        addField(fields, appointment.getType(), type);
+        for (Map.Entry<String, Integer> field : fields.entrySet()) {
+            terms.computeIfAbsent(field.getKey(), term -> new Postings()).put(appointment.getAppId(), field.getValue().byteValue());
+        }
+        maxId = Math.max(maxId, appointment.getAppId());
+        documents.put(appointment.getAppId(), new Document(appointment.getCustId(), fields.keySet().toArray(new String[0])));
+    }
+
+    private static void addField(Map<String, Integer> fields, String text, int field) {
+        for (String word : tokens(text)) {
+            fields.merge(word, field, (a, b) -> a | b);
+        }
+    }
+
+    private static void remove(int appId) {
+        Document previous = documents.remove(appId);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous.terms) {
+            Postings postings = terms.get(term);
+            if (postings != null && postings.remove(appId)) {
+                terms.remove(term);
+            }
+        }
+    }
+
+    private static double[] fieldWeights() {
+        double[] weights = new double[16];
+        for (int fields = 1; fields < weights.length; fields++) {
+            weights[fields] = ((fields & title) != 0 ? 3 : 0) + ((fields & type) != 0 ? 2 : 0)
+                    + ((fields & location) != 0 ? 2 : 0) + ((fields & description) != 0 ? 1 : 0);
+        }
+        return weights;
+    }
+
+    /**
+     * The indexed words starting with one query word, and how many postings they hold between them.
+     */
+    private static class Match {
+        private final String word;
+        private final SortedMap<String, Postings> terms;
+        private final long postings;
+
+        private Match(String word, SortedMap<String, Postings> terms) {
+            this.word = word;
+            this.terms = terms;
+            long count = 0;
+            for (Postings postings : terms.values()) {
+                count += postings.size;
+            }
+            this.postings = count;
+        }
+    }
+
+    /**
+     * The customer of an indexed appointment and the words it holds, to take it out of the index again.
+     */
+    private static class Document {
+        private final int custId;
+        private final String[] terms;
+
+        private Document(int custId, String[] terms) {
+            this.custId = custId;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * The appointments containing one word, in appointment ID order, with the fields the word is in as a bit set.
+     * New appointments have the highest IDs, so they are appended without moving the rest.
+     */
+    private static class Postings {
+        private int[] ids = new int[2];
+        private byte[] fields = new byte[2];
+        private int size;
+
+        private void put(int id, byte field) {
+            int index = size > 0 && ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                fields[index] = field;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(fields, index, fields, index + 1, size - index);
+            ids[index] = id;
+            fields[index] = field;
+            size++;
+        }
+
+        /**
+         * @return The fields the word is in for the appointment, or 0 if it does not contain it.
+         */
+        private int fieldsOf(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? fields[index] : 0;
+        }
+
+        /**
+         * @return true if no appointment contains the word any more.
+         */
+        private boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                System.arraycopy(fields, index + 1, fields, index, size - index - 1);
+                size--;
+            }
+            return size == 0;
+        }
+    }
+}
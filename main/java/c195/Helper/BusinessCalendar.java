@@ -0,0 +1,163 @@
+package c195.Helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This helper class defines the business hours appointments must fall within: 8:00 a.m. to 10:00 p.m. Eastern Time, in slots of 15 minutes, on every day that is not a closure.
+ * The opening and closing instants of each business date are computed once, placing the hours in Eastern Time on that date itself,
+ * so they are correct on both sides of a daylight saving change, and are cached along with the slot times of each date in each time zone that asks for them.
+ * Checking an appointment or listing the slots of a date is then a map lookup, whatever the date.
+ * <p>
+ * Holidays and other closures are read from the business-closures.txt resource, one yyyy-MM-dd date per line with # starting a comment,
+ * and from the {@code c195.business.closures} system property, a comma separated list of dates.
+ * </p>
+ */
+public class BusinessCalendar {
+
+    /** The length of one slot, in minutes. */
+    public static final int slotMinutes = 15;
+
+    private static final ZoneId businessZone = ZoneId.of("America/New_York");
+    private static final LocalTime opening = LocalTime.of(8, 0);
+    private static final LocalTime closing = LocalTime.of(22, 0);
+    private static final int slotsPerDay = (int) (Duration.between(opening, closing).toMinutes() / slotMinutes);
+    private static final Set<LocalDate> closures = closures();
+    private static final Map<LocalDate, Window> windows = new ConcurrentHashMap<>();
+    private static final Map<ZoneId, Map<LocalDate, List<LocalTime>>> slotTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the time zone business hours are kept in.
+     * @return The Eastern Time zone.
+     */
+    public static ZoneId zone() {
+        return businessZone;
+    }
+
+    /**
+     * Returns the number of slots between opening and closing on a business day.
+     * @return The number of 15-minute slots in a business day.
+     */
+    public static int slotsPerDay() {
+        return slotsPerDay;
+    }
+
+    /**
+     * Returns the business hours of a date in Eastern Time.
+     * @param businessDate The date in Eastern Time.
+     * @return The cached opening and closing instants of the date, marked closed for holidays and closures.
+     */
+    public static Window window(LocalDate businessDate) {
+        return windows.computeIfAbsent(businessDate, date -> new Window(
+                date.atTime(opening).atZone(businessZone).toInstant(),
+                date.atTime(closing).atZone(businessZone).toInstant(),
+                closures.contains(date)));
+    }
+
+    /**
+     * Checks whether an appointment falls within business hours, from opening to closing on a single open business day.
+     * @param starting The start time of the appointment in the user's time zone.
+     * @param ending The end time of the appointment in the user's time zone.
+     * @return true if the appointment starts and ends within the business hours of the day it starts on; false otherwise.
+     */
+    public static boolean withinBusinessHours(LocalDateTime starting, LocalDateTime ending) {
+        Instant start = starting.atZone(ZoneId.systemDefault()).toInstant();
+        Instant end = ending.atZone(ZoneId.systemDefault()).toInstant();
+        Window window = window(start.atZone(businessZone).toLocalDate());
+        return !window.closed && !start.isBefore(window.open) && !end.isAfter(window.close);
+    }
+
+    /**
+     * Returns the slot times within business hours on a date in the user's time zone, for the time choice boxes of the appointment forms.
+     * The list includes the closing time, so it can be used for end times too, and is empty on dates with no business hours.
+     * @param date The date in the user's time zone.
+     * @return The cached, read-only list of slot times on the date, in order.
+     */
+    public static List<LocalTime> slots(LocalDate date) {
+        ZoneId zone = ZoneId.systemDefault();
+        return slotTimes.computeIfAbsent(zone, key -> new ConcurrentHashMap<>()).computeIfAbsent(date, key -> slots(key, zone));
+    }
+
+    private static List<LocalTime> slots(LocalDate date, ZoneId zone) {
+        TreeSet<LocalTime> times = new TreeSet<>();
+        for (LocalDate businessDate = date.minusDays(1); !businessDate.isAfter(date.plusDays(1)); businessDate = businessDate.plusDays(1)) {
+            Window window = window(businessDate);
+            if (window.closed) {
+                continue;
+            }
+            for (int slot = 0; slot <= slotsPerDay; slot++) {
+                ZonedDateTime time = window.open.plusSeconds(slot * slotMinutes * 60L).atZone(zone);
+                if (time.toLocalDate().equals(date)) {
+                    times.add(time.toLocalTime());
+                }
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(times));
+    }
+
+    private static Set<LocalDate> closures() {
+        Set<LocalDate> dates = new HashSet<>();
+        try (InputStream stream = BusinessCalendar.class.getResourceAsStream("/business-closures.txt")) {
+            if (stream != null) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    addClosure(dates, comment >= 0 ? line.substring(0, comment) : line);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Closures Error: " + e.getMessage());
+        }
+        for (String date : System.getProperty("c195.business.closures", "").split(",")) {
+            addClosure(dates, date);
+        }
+        return Collections.unmodifiableSet(dates);
+    }
+
+    private static void addClosure(Set<LocalDate> dates, String text) {
+        String date = text.trim();
+        if (date.isEmpty()) {
+            return;
+        }
+        try {
+            dates.add(LocalDate.parse(date));
+        } catch (DateTimeParseException e) {
+            System.out.println("Ignoring closure date: " + date);
+        }
+    }
+
+    /**
+     * The business hours of one Eastern Time date: the instants the business opens and closes, and whether it is closed all day.
+     */
+    public static class Window {
+        private final Instant open;
+        private final Instant close;
+        private final boolean closed;
+
+        private Window(Instant open, Instant close, boolean closed) {
+            this.open = open;
+            this.close = close;
+            this.closed = closed;
+        }
+
+        public Instant getOpen() {
+            return open;
+        }
+
+        public Instant getClose() {
+            return close;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
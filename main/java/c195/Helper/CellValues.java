@@ -0,0 +1,24 @@
+package c195.Helper;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.scene.control.TableColumn;
+
+import java.util.function.Function;
+
+/**
+ * This helper class binds table columns to the getters of the row objects.
+ * The column reads its value by calling the getter directly, where a PropertyValueFactory looks the getter up by name through reflection each time a cell is rendered.
+ */
+public class CellValues {
+
+    /**
+     * Sets the cell value factory of a column to a getter of the row type. Called once, when the view is initialized.
+     * @param column The column to bind.
+     * @param getter Reads the column's value from a row, such as {@code Appointments::getTitle}.
+     * @param <S> The type of the table rows.
+     * @param <T> The type of the column's values.
+     */
+    public static <S, T> void bind(TableColumn<S, T> column, Function<S, T> getter) {
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(getter.apply(cell.getValue())));
+    }
+}
@@ -0,0 +1,99 @@
+package c195.Helper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class describes one change to the saved data, published on the {@link EventBus} by the DAO that made it.
+ * Created and updated events carry the saved entities, so subscribers can patch their copies without reading them back;
+ * deleted events carry the IDs of the deleted rows, and an invalidated event tells subscribers that some changes are not known one by one and their copies must be reloaded.
+ * @param <T> The type of the changed entities, such as Appointments or Customers.
+ */
+public class ChangeEvent<T> {
+
+    /**
+     * The kinds of change.
+     */
+    public enum Kind { CREATED, UPDATED, DELETED, INVALIDATED }
+
+    private final Class<T> type;
+    private final Kind kind;
+    private final List<T> entities;
+    private final List<Integer> ids;
+
+    private ChangeEvent(Class<T> type, Kind kind, List<T> entities, List<Integer> ids) {
+        this.type = type;
+        this.kind = kind;
+        this.entities = entities;
+        this.ids = ids;
+    }
+
+    /**
+     * Creates the event for newly saved entities.
+     * @param type The type of the entities.
+     * @param entities The entities that were saved, with their generated IDs.
+     * @param <T> The type of the entities.
+     * @return A CREATED event.
+     */
+    public static <T> ChangeEvent<T> created(Class<T> type, Collection<T> entities) {
+        return new ChangeEvent<>(type, Kind.CREATED, Collections.unmodifiableList(new ArrayList<>(entities)), Collections.emptyList());
+    }
+
+    /**
+     * Creates the event for modified entities.
+     * @param type The type of the entities.
+     * @param entities The entities as they were saved.
+     * @param <T> The type of the entities.
+     * @return An UPDATED event.
+     */
+    public static <T> ChangeEvent<T> updated(Class<T> type, Collection<T> entities) {
+        return new ChangeEvent<>(type, Kind.UPDATED, Collections.unmodifiableList(new ArrayList<>(entities)), Collections.emptyList());
+    }
+
+    /**
+     * Creates the event for deleted rows.
+     * @param type The type of the deleted entities.
+     * @param ids The IDs of the deleted rows.
+     * @param <T> The type of the entities.
+     * @return A DELETED event.
+     */
+    public static <T> ChangeEvent<T> deleted(Class<T> type, Collection<Integer> ids) {
+        return new ChangeEvent<>(type, Kind.DELETED, Collections.emptyList(), Collections.unmodifiableList(new ArrayList<>(ids)));
+    }
+
+    /**
+     * Creates the event telling subscribers to reload their copies of a type.
+     * @param type The type of the entities.
+     * @param <T> The type of the entities.
+     * @return An INVALIDATED event.
+     */
+    public static <T> ChangeEvent<T> invalidated(Class<T> type) {
+        return new ChangeEvent<>(type, Kind.INVALIDATED, Collections.emptyList(), Collections.emptyList());
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the saved entities of a created or updated event.
+     * @return The entities, or an empty list for other kinds of event.
+     */
+    public List<T> getEntities() {
+        return entities;
+    }
+
+    /**
+     * Returns the IDs of the rows of a deleted event.
+     * @return The IDs, or an empty list for other kinds of event.
+     */
+    public List<Integer> getIds() {
+        return ids;
+    }
+}
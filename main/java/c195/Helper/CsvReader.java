@@ -0,0 +1,116 @@
+package c195.Helper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This helper class reads comma separated values one record at a time, so a file of any size can be processed without loading it into memory.
+ * Fields may be quoted with double quotes, in which case they can contain commas, line breaks and doubled quotes.
+ * A byte order mark at the start of the text, as written by spreadsheet programs saving "CSV UTF-8", is skipped.
+ */
+public class CsvReader implements Closeable {
+
+    private final BufferedReader reader;
+    private int lineNumber = 0;
+    private int recordLine = 0;
+
+    /**
+     * Creates a reader over a stream of text.
+     * @param reader The text to read.
+     */
+    public CsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record.
+     * @return The fields of the record, or null at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    public List<String> next() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        if (lineNumber == 0 && line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        lineNumber++;
+        recordLine = lineNumber;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Returns the line number the last record started on, counting from 1.
+     * @return The line number of the last record read.
+     */
+    public int lineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Quotes a field for writing if it contains a comma, a quote or a line break.
+     * @param field The field to write.
+     * @return The field as it should appear in a CSV file.
+     */
+    public static String quote(String field) {
+        if (field == null) {
+            return "";
+        }
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Closes the underlying input.
+     * @throws IOException If the input cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,196 @@
+package c195.Helper;
+
+import c195.DAO.CustomersDao;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This helper class finds customers by the start of their name or of any later part of it, their phone number, their postal code or their ID, for the type-ahead customer fields.
+ * The keys of every customer are kept in one sorted array, with the customer ID of each key in a parallel array,
+ * so a lookup is a binary search for the first key starting with the typed text followed by a walk over the next few keys, in microseconds however many customers there are.
+ * Keys are lower-cased and stripped of accents like the words of {@link AppointmentSearch}; phone numbers and postal codes are also kept without their spaces and dashes,
+ * so "555-12" finds the phone number "555-1234", "a1b2" finds the postal code "A1B 2C3" and "obrien" finds "Mary O'Brien".
+ * <p>
+ * The customers are read a page at a time on first use and are kept in sync by the customer change events on the {@link EventBus}.
+ * A change only marks the arrays stale; they are sorted again from the customers in memory on the next lookup, so a burst of changes costs one rebuild.
+ * Loads, rebuilds and lookups hold the class lock, but names are read from a concurrent map without it, so the combo boxes showing them on the JavaFX thread never wait for a load.
+ * </p>
+ */
+public class CustomerSearch {
+
+    private static final int pageSize = Math.max(1, Integer.getInteger("c195.store.pageSize", 1000));
+    private static final Map<Integer, Customers> customers = new ConcurrentHashMap<>();
+    private static Index index = null;
+    private static boolean loaded = false;
+
+    static {
+        EventBus.subscribe(Customers.class, CustomerSearch::onCustomers);
+    }
+
+    /**
+     * Loads the customers if they are not cached yet, so the first lookup does not wait for them.
+     * @return true once the customers are loaded.
+     * @throws SQLException If there is an issue executing the SQL query.
+     */
+    public static synchronized boolean warmUp() throws SQLException {
+        index();
+        return true;
+    }
+
+    /**
+     * Finds the customers with a name, later part of a name, phone number, postal code or ID starting with the typed text.
+     * Whole-text matches come first, then matches ignoring spaces and dashes; each in key order, so shorter and alphabetically earlier keys come first.
+     * @param text The text typed so far.
+     * @param limit The maximum number of customers to return.
+     * @return The IDs of the matching customers, without duplicates; empty if the text has no letters or digits.
+     * @throws SQLException If the customers have to be loaded and the query fails.
+     */
+    public static synchronized List<Integer> search(String text, int limit) throws SQLException {
+        List<String> words = AppointmentSearch.tokens(text);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        Index current = index();
+        LinkedHashSet<Integer> found = new LinkedHashSet<>();
+        current.collect(String.join(" ", words), found, limit);
+        if (words.size() > 1) {
+            current.collect(String.join("", words), found, limit);
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Returns the name of a cached customer, for showing next to its ID. Does not wait for a load or rebuild in progress.
+     * @param custId The ID of the customer.
+     * @return The name of the customer, or null if the customers are not loaded yet or there is no customer with the ID.
+     */
+    public static String name(int custId) {
+        Customers customer = customers.get(custId);
+        return customer == null ? null : customer.getCustName();
+    }
+
+    /**
+     * Discards the cached customers so the next lookup reloads them from the database.
+     */
+    public static synchronized void invalidate() {
+        customers.clear();
+        index = null;
+        loaded = false;
+    }
+
+    private static synchronized void onCustomers(ChangeEvent<Customers> event) {
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                if (loaded) {
+                    for (Customers customer : event.getEntities()) {
+                        customers.put(customer.getCustId(), customer);
+                    }
+                    index = null;
+                }
+                break;
+            case DELETED:
+                for (int custId : event.getIds()) {
+                    customers.remove(custId);
+                }
+                index = null;
+                break;
+            default:
+                invalidate();
+        }
+    }
+
+    private static Index index() throws SQLException {
+        if (!loaded) {
+            int afterId = 0;
+            while (true) {
+                List<Customers> page = CustomersDao.selectCustomersPage(afterId, pageSize);
+                for (Customers customer : page) {
+                    customers.put(customer.getCustId(), customer);
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getCustId();
+            }
+            loaded = true;
+            index = null;
+        }
+        if (index == null) {
+            index = new Index(customers.values());
+        }
+        return index;
+    }
+
+    /**
+     * The sorted keys of every customer and the customer ID of each key.
+     */
+    private static class Index {
+        private final String[] keys;
+        private final int[] ids;
+
+        private Index(Collection<Customers> customers) {
+            List<Key> all = new ArrayList<>(customers.size() * 8);
+            for (Customers customer : customers) {
+                int custId = customer.getCustId();
+                List<String> name = AppointmentSearch.tokens(customer.getCustName());
+                for (int i = 0; i < name.size(); i++) {
+                    List<String> rest = name.subList(i, name.size());
+                    all.add(new Key(String.join(" ", rest), custId));
+                    if (rest.size() > 1) {
+                        all.add(new Key(String.join("", rest), custId));
+                    }
+                }
+                addCompact(all, customer.getPhoneNum(), custId);
+                addCompact(all, customer.getZipcode(), custId);
+                all.add(new Key(Integer.toString(custId), custId));
+            }
+            all.sort(Comparator.comparing((Key key) -> key.text).thenComparingInt(key -> key.custId));
+            keys = new String[all.size()];
+            ids = new int[all.size()];
+            for (int i = 0; i < all.size(); i++) {
+                keys[i] = all.get(i).text;
+                ids[i] = all.get(i).custId;
+            }
+        }
+
+        private static void addCompact(List<Key> all, String text, int custId) {
+            List<String> words = AppointmentSearch.tokens(text);
+            if (!words.isEmpty()) {
+                all.add(new Key(String.join("", words), custId));
+            }
+        }
+
+        /**
+         * Adds the customers of the keys starting with a prefix, in key order, until the limit is reached.
+         */
+        private void collect(String prefix, Set<Integer> found, int limit) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < keys.length && found.size() < limit && keys[i].startsWith(prefix); i++) {
+                found.add(ids[i]);
+            }
+        }
+    }
+
+    private static class Key {
+        private final String text;
+        private final int custId;
+
+        private Key(String text, int custId) {
+            this.text = text;
+            this.custId = custId;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package c195.Helper;
+
+import c195.DAO.AsyncDao;
+import javafx.scene.control.ComboBox;
+import javafx.util.StringConverter;
+
+import java.util.List;
+
+/**
+ * This helper class turns a customer ID combo box into a type-ahead field: typing a customer's name, phone number, postal code or ID
+ * lists the best matches from {@link CustomerSearch} in the drop-down, so the combo box never has to hold every customer.
+ * Customers are shown as their ID followed by their name, and the value of the combo box stays the customer ID.
+ * Text that is neither the label of a listed customer nor the ID of a known customer commits no customer, so a partly typed name is never saved as the first match.
+ * The drop-down lists 15 customers by default, which can be set with the {@code c195.typeAhead.limit} system property.
+ */
+public class CustomerTypeAhead {
+
+    private static final int limit = Math.max(1, Integer.getInteger("c195.typeAhead.limit", 15));
+
+    /**
+     * Makes a customer ID combo box editable and looks the typed text up in the background as it changes.
+     * Lookups for text the user has since typed past are dropped.
+     * @param combo The customer ID combo box.
+     * @param tasks The task group of the view, cancelled when the user leaves it.
+     */
+    public static void bind(ComboBox<Integer> combo, TaskGroup tasks) {
+        combo.setEditable(true);
+        combo.setConverter(new StringConverter<Integer>() {
+            @Override
+            public String toString(Integer custId) {
+                return custId == null ? "" : label(custId);
+            }
+            @Override
+            public Integer fromString(String string) {
+                if (string == null || string.isBlank()) {
+                    return null;
+                }
+                for (Integer custId : combo.getItems()) {
+                    if (label(custId).equals(string)) {
+                        return custId;
+                    }
+                }
+                try {
+                    int custId = Integer.parseInt(string.strip());
+                    return combo.getItems().contains(custId) || CustomerSearch.name(custId) != null ? custId : null;
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        });
+        combo.getEditor().textProperty().addListener((observable, previous, text) -> {
+            if (!combo.getEditor().isFocused() || text.equals(combo.getConverter().toString(combo.getValue()))) {
+                return;
+            }
+            AsyncDao.load(tasks, () -> CustomerSearch.search(text, limit), hits -> {
+                if (!text.equals(combo.getEditor().getText())) {
+                    return;
+                }
+                combo.getItems().setAll(hits);
+                if (hits.isEmpty()) {
+                    combo.hide();
+                } else {
+                    combo.show();
+                }
+            }, Throwable::printStackTrace);
+        });
+    }
+
+    /**
+     * Shows a customer, or none, in a type-ahead combo box and loads the customers in the background so its name can be shown.
+     * @param combo The customer ID combo box.
+     * @param tasks The task group of the view.
+     * @param custId The ID of the customer to show, or null to clear the field.
+     */
+    public static void show(ComboBox<Integer> combo, TaskGroup tasks, Integer custId) {
+        combo.getItems().setAll(custId == null ? List.of() : List.of(custId));
+        combo.setValue(custId);
+        combo.getEditor().setText(combo.getConverter().toString(custId));
+        AsyncDao.load(tasks, CustomerSearch::warmUp, loaded -> {
+            if (custId != null && custId.equals(combo.getValue())) {
+                combo.getEditor().setText(combo.getConverter().toString(custId));
+            }
+        }, Throwable::printStackTrace);
+    }
+
+    /**
+     * Returns how a customer is shown in a type-ahead combo box.
+     * @param custId The ID of the customer.
+     * @return The ID followed by the name of the customer, or the ID alone if the name is not known yet.
+     */
+    public static String label(int custId) {
+        String name = CustomerSearch.name(custId);
+        return name == null ? Integer.toString(custId) : custId + " - " + name;
+    }
+}
@@ -1,17 +1,16 @@
 package c195.Helper;
 
-import c195.DAO.AppointmentsDao;
-import c195.Model.Appointments;
-
 import java.sql.SQLException;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.util.TimeZone;
+import java.time.temporal.TemporalAdjusters;
+import java.time.temporal.WeekFields;
+import java.util.Locale;
 
 /**
  * This helper class provides utility methods related to date and time formatting and calculations.
- * It includes functionality for formatting the current local date and time, and converting a specific date and time to Eastern Time.
- * It also checks for appointment overlaps based on provided start and end times.
+ * It includes functionality for formatting the current local date and time and finding the start of the current month and week.
+ * It also checks for appointment overlaps based on provided start and end times. Business hours are defined by {@link BusinessCalendar}.
  * I thought about making a separate controller file for the overlap method but this was simpler, lol.
  */
 public class DateTimeFormat {
@@ -28,22 +27,26 @@ public class DateTimeFormat {
     }
 
     /**
-     * Converts a specified date and time to Eastern Time (America/New_York) and then adjusts it to the local time zone.
-     * @return A ZonedDateTime object representing the specified Eastern Time adjusted to the local time zone.
+     * Returns midnight on the first day of the current month in the user's time zone.
+     * @return A LocalDateTime marking the start of the current month.
+     */
+    public static LocalDateTime startOfMonth() {
+        return LocalDate.now(ZoneId.systemDefault()).withDayOfMonth(1).atStartOfDay();
+    }
+
+    /**
+     * Returns midnight on the first day of the current week in the user's time zone.
+     * The first day of the week follows the user's locale, Sunday for English and Monday for French.
+     * @return A LocalDateTime marking the start of the current week.
      */
-    public static ZonedDateTime easternTime() {
-        LocalDate easternDate = LocalDate.of(2024,02,14);
-        LocalTime easternTime = LocalTime.of(8,00);
-        ZoneId easternZone = ZoneId.of("America/New_York");
-        ZonedDateTime easternZoneDT = ZonedDateTime.of(easternDate, easternTime, easternZone);
-        ZoneId localZone = ZoneId.of(TimeZone.getDefault().getID());
-        ZonedDateTime easternToLocalZone = easternZoneDT.withZoneSameInstant(localZone);
-        return easternToLocalZone;
+    public static LocalDateTime startOfWeek() {
+        DayOfWeek firstDay = WeekFields.of(Locale.getDefault()).getFirstDayOfWeek();
+        return LocalDate.now(ZoneId.systemDefault()).with(TemporalAdjusters.previousOrSame(firstDay)).atStartOfDay();
     }
 
     /**
      * Checks for any appointment overlaps for a given customer.
-     * It compares the provided start and end times with the start and end times of existing appointments for the customer.
+     * The check is answered by the customer's interval tree in {@link AppointmentIndex} rather than by reloading the customer's appointments.
      * @param starting The start time of the appointment being checked for overlaps.
      * @param ending The end time of the appointment being checked for overlaps.
      * @param custId The customer ID to check for overlapping appointments.
@@ -52,21 +55,7 @@ public class DateTimeFormat {
      */
     public static boolean checkApptOverlap(LocalDateTime starting, LocalDateTime ending, int custId, int apptId) {
         try {
-            for (Appointments appointments: AppointmentsDao.selectAppsByCust(custId)) {
-                if (appointments.getAppId() == apptId) {
-                    continue;
-                } if (starting.isEqual(appointments.getBegin()) || ending.isEqual(appointments.getEnd())) {
-                    return true;
-                } if (starting.isBefore(appointments.getBegin()) && ending.isAfter(appointments.getBegin())) {
-                    return true;
-                } if (starting.isAfter(appointments.getBegin()) && starting.isBefore(appointments.getEnd())) {
-                    return true;
-                } if (starting.isBefore(appointments.getBegin()) && ending.isAfter(appointments.getEnd())) {
-                    return true;
-                } if (starting.isAfter(appointments.getBegin()) && ending.isBefore(appointments.getEnd())) {
-                    return true;
-                }
-            }
+            return AppointmentIndex.customerOverlap(starting, ending, custId, apptId);
         } catch (SQLException throwable) {
             throwable.printStackTrace();
         } return false;
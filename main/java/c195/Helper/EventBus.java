@@ -0,0 +1,50 @@
+package c195.Helper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * This helper class passes the {@link ChangeEvent}s published by the DAOs to the caches, indexes and tables that keep a copy of the data,
+ * so each of them patches only the rows that changed instead of being reloaded, and the DAOs need not know who keeps a copy.
+ * Subscribers are called in the order they subscribed, on the thread that published the event, which is usually a background DAO thread;
+ * subscribers that change JavaFX controls hand the change over to the JavaFX application thread themselves.
+ * A subscriber that throws is reported and does not stop the others from being called.
+ */
+public class EventBus {
+
+    private static final Map<Class<?>, List<Consumer<ChangeEvent<?>>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a subscriber for the changes of one type of entity.
+     * Caches usually subscribe when their class is first used, as a cache that does not exist yet has nothing to patch.
+     * @param type The type of entity, such as Appointments.class.
+     * @param subscriber Receives every change event published for the type.
+     * @param <T> The type of entity.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void subscribe(Class<T> type, Consumer<ChangeEvent<T>> subscriber) {
+        subscribers.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>()).add(event -> subscriber.accept((ChangeEvent<T>) event));
+    }
+
+    /**
+     * Passes a change event to every subscriber of its type, before returning.
+     * @param event The change that was saved.
+     * @param <T> The type of the changed entities.
+     */
+    public static <T> void publish(ChangeEvent<T> event) {
+        List<Consumer<ChangeEvent<?>>> listeners = subscribers.get(event.getType());
+        if (listeners == null) {
+            return;
+        }
+        for (Consumer<ChangeEvent<?>> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                System.out.println("Event Error: " + event.getKind() + " " + event.getType().getSimpleName() + " - " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package c195.Helper;
+
+import c195.DAO.AppointmentsDao;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+
+import java.sql.SQLException;
+import java.time.*;
+import java.util.*;
+
+/**
+ * This helper class finds the earliest times at which a contact and a customer are both free, on the 15-minute grid of business hours.
+ * Business hours, as defined by {@link BusinessCalendar}, run from 8:00 a.m. to 10:00 p.m. Eastern Time, 56 slots of 15 minutes, so the bookings of one contact or customer on one business day fit in one long,
+ * with bit i set if slot i is taken. A search ORs the contact's and the customer's word for each day, inverts it, and ANDs the result with itself shifted
+ * so that only the slots starting a long enough run of free slots remain set, which costs a handful of word operations per day however many appointments there are.
+ * Closure dates have no free slots.
+ * <p>
+ * The bitsets are built from the appointment times on first use and are kept in sync by the appointment and customer change events on the {@link EventBus}.
+ * Each day also remembers the slots of every appointment on it, so removing an appointment frees only the slots no other appointment takes.
+ * </p>
+ */
+public class FreeSlotFinder {
+
+    private static final int slotMinutes = BusinessCalendar.slotMinutes;
+    private static final int slotsPerDay = Math.min(Long.SIZE - 1, BusinessCalendar.slotsPerDay());
+    private static final long dayMask = (1L << slotsPerDay) - 1;
+
+    private static final Map<Integer, Appointments> appointmentsById = new HashMap<>();
+    private static final Map<Integer, Map<Long, Day>> byContact = new HashMap<>();
+    private static final Map<Integer, Map<Long, Day>> byCustomer = new HashMap<>();
+    private static boolean loaded = false;
+
+    static {
+        EventBus.subscribe(Appointments.class, FreeSlotFinder::onAppointments);
+        EventBus.subscribe(Customers.class, event -> {
+            if (event.getKind() == ChangeEvent.Kind.DELETED) {
+                removeCustomers(event.getIds());
+            }
+        });
+    }
+
+    /**
+     * Finds the earliest start times, from now on, at which both a contact and a customer are free for a whole appointment.
+     * @param contId The ID of the contact.
+     * @param custId The ID of the customer.
+     * @param duration The length of the appointment; it is rounded up to whole slots.
+     * @param from The first date to search, in the user's time zone.
+     * @param to The last date to search, in the user's time zone.
+     * @param limit The maximum number of start times to return.
+     * @return The free start times in the user's time zone, earliest first.
+     * @throws SQLException If the bitsets have to be loaded and the query fails.
+     */
+    public static synchronized List<LocalDateTime> find(int contId, int custId, Duration duration, LocalDate from, LocalDate to, int limit) throws SQLException {
+        List<LocalDateTime> found = new ArrayList<>();
+        int need = (int) Math.max(1, (duration.toMinutes() + slotMinutes - 1) / slotMinutes);
+        if (need > slotsPerDay || limit <= 0 || to.isBefore(from)) {
+            return found;
+        }
+        load();
+        Map<Long, Day> contactDays = byContact.getOrDefault(contId, Collections.emptyMap());
+        Map<Long, Day> customerDays = byCustomer.getOrDefault(custId, Collections.emptyMap());
+        ZoneId localZone = ZoneId.systemDefault();
+        ZoneId businessZone = BusinessCalendar.zone();
+        ZonedDateTime now = ZonedDateTime.now(businessZone);
+        LocalDate firstDay = from.atStartOfDay(localZone).withZoneSameInstant(businessZone).toLocalDate();
+        LocalDate lastDay = to.plusDays(1).atStartOfDay(localZone).withZoneSameInstant(businessZone).toLocalDate();
+        if (firstDay.isBefore(now.toLocalDate())) {
+            firstDay = now.toLocalDate();
+        }
+
+        for (LocalDate day = firstDay; !day.isAfter(lastDay) && found.size() < limit; day = day.plusDays(1)) {
+            BusinessCalendar.Window window = BusinessCalendar.window(day);
+            if (window.isClosed()) {
+                continue;
+            }
+            long epochDay = day.toEpochDay();
+            long free = ~(busy(contactDays, epochDay) | busy(customerDays, epochDay)) & dayMask;
+            Instant open = window.getOpen();
+            if (day.equals(now.toLocalDate())) {
+                long elapsed = Duration.between(open, now.toInstant()).toMinutes();
+                int firstSlot = (int) Math.max(0, (elapsed + slotMinutes) / slotMinutes);
+                free &= firstSlot >= slotsPerDay ? 0 : dayMask << firstSlot;
+            }
+            long starts = runStarts(free, need);
+            while (starts != 0 && found.size() < limit) {
+                int slot = Long.numberOfTrailingZeros(starts);
+                starts &= starts - 1;
+                LocalDateTime start = LocalDateTime.ofInstant(open.plusSeconds(slot * slotMinutes * 60L), localZone);
+                LocalDate date = start.toLocalDate();
+                if (!date.isBefore(from) && !date.isAfter(to)) {
+                    found.add(start);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Discards the bitsets so the next search reloads them from the database.
+     */
+    public static synchronized void invalidate() {
+        appointmentsById.clear();
+        byContact.clear();
+        byCustomer.clear();
+        loaded = false;
+    }
+
+    /**
+     * Keeps only the bits of free slots that start a run of at least the given number of free slots.
+     * The run length covered doubles with each shift, so a run of n slots takes about log2(n) shifts.
+     */
+    private static long runStarts(long free, int need) {
+        long starts = free;
+        int covered = 1;
+        while (covered < need && starts != 0) {
+            int shift = Math.min(covered, need - covered);
+            starts &= starts >>> shift;
+            covered += shift;
+        }
+        return starts;
+    }
+
+    private static long busy(Map<Long, Day> days, long epochDay) {
+        Day day = days.get(epochDay);
+        return day == null ? 0L : day.busy;
+    }
+
+    private static synchronized void onAppointments(ChangeEvent<Appointments> event) {
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                if (loaded) {
+                    for (Appointments appointment : event.getEntities()) {
+                        remove(appointment.getAppId());
+                        add(appointment);
+                    }
+                }
+                break;
+            case DELETED:
+                for (int appId : event.getIds()) {
+                    remove(appId);
+                }
+                break;
+            default:
+                invalidate();
+        }
+    }
+
+    private static synchronized void removeCustomers(Collection<Integer> custIds) {
+        Set<Integer> customers = new HashSet<>(custIds);
+        List<Integer> appIds = new ArrayList<>();
+        for (Appointments appointment : appointmentsById.values()) {
+            if (customers.contains(appointment.getCustId())) {
+                appIds.add(appointment.getAppId());
+            }
+        }
+        for (int appId : appIds) {
+            remove(appId);
+        }
+    }
+
+    private static void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        for (Appointments appointment : AppointmentsDao.selectAppointmentTimes()) {
+            add(appointment);
+        }
+        loaded = true;
+    }
+
+    private static void add(Appointments appointment) {
+        appointmentsById.put(appointment.getAppId(), appointment);
+        forEachDay(appointment, (epochDay, mask) -> {
+            byContact.computeIfAbsent(appointment.getContId(), id -> new HashMap<>()).computeIfAbsent(epochDay, day -> new Day()).add(appointment.getAppId(), mask);
+            byCustomer.computeIfAbsent(appointment.getCustId(), id -> new HashMap<>()).computeIfAbsent(epochDay, day -> new Day()).add(appointment.getAppId(), mask);
+        });
+    }
+
+    private static void remove(int appId) {
+        Appointments previous = appointmentsById.remove(appId);
+        if (previous == null) {
+            return;
+        }
+        forEachDay(previous, (epochDay, mask) -> {
+            removeFrom(byContact, previous.getContId(), epochDay, appId);
+            removeFrom(byCustomer, previous.getCustId(), epochDay, appId);
+        });
+    }
+
+    private static void removeFrom(Map<Integer, Map<Long, Day>> owners, int owner, long epochDay, int appId) {
+        Map<Long, Day> days = owners.get(owner);
+        if (days == null) {
+            return;
+        }
+        Day day = days.get(epochDay);
+        if (day != null && day.remove(appId)) {
+            days.remove(epochDay);
+            if (days.isEmpty()) {
+                owners.remove(owner);
+            }
+        }
+    }
+
+    /**
+     * Passes the slot mask of an appointment on each business day it overlaps, clipped to business hours.
+     * Each day's opening is the cached, daylight saving correct instant from {@link BusinessCalendar}.
+     */
+    private static void forEachDay(Appointments appointment, DayMask action) {
+        ZonedDateTime start = appointment.getBegin().atZone(ZoneId.systemDefault()).withZoneSameInstant(BusinessCalendar.zone());
+        ZonedDateTime end = appointment.getEnd().atZone(ZoneId.systemDefault()).withZoneSameInstant(BusinessCalendar.zone());
+        for (LocalDate day = start.toLocalDate(); !day.isAfter(end.toLocalDate()); day = day.plusDays(1)) {
+            Instant open = BusinessCalendar.window(day).getOpen();
+            long fromMinute = Duration.between(open, start.toInstant()).toMinutes();
+            long toMinute = Duration.between(open, end.toInstant()).toMinutes();
+            int first = (int) Math.max(0, Math.floorDiv(fromMinute, slotMinutes));
+            int last = (int) Math.min(slotsPerDay, Math.max(0, Math.floorDiv(toMinute + slotMinutes - 1, slotMinutes)));
+            if (first < last) {
+                action.accept(day.toEpochDay(), ((1L << (last - first)) - 1) << first);
+            }
+        }
+    }
+
+    private interface DayMask {
+        void accept(long epochDay, long mask);
+    }
+
+    /**
+     * The taken slots of one contact or customer on one business day, and the slots of each appointment that takes them.
+     */
+    private static class Day {
+        private final Map<Integer, Long> masks = new HashMap<>(4);
+        private long busy;
+
+        private void add(int appId, long mask) {
+            masks.put(appId, mask);
+            busy |= mask;
+        }
+
+        /**
+         * Frees the slots of an appointment that no other appointment of the day takes.
+         * @return true if the day has no appointments left.
+         */
+        private boolean remove(int appId) {
+            if (masks.remove(appId) == null) {
+                return masks.isEmpty();
+            }
+            busy = 0L;
+            for (long mask : masks.values()) {
+                busy |= mask;
+            }
+            return masks.isEmpty();
+        }
+    }
+}
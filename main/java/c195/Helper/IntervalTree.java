@@ -0,0 +1,211 @@
+package c195.Helper;
+
+/**
+ * This class is a balanced (AVL) interval tree over appointment times.
+ * Each node stores an appointment ID with its start and end, ordered by start, and remembers the latest end in its subtree
+ * so overlap queries can skip every subtree that ends before the interval being checked.
+ * Inserts, removals and overlap checks run in O(log n) time for the non-overlapping schedules this application keeps.
+ * Times are given as epoch seconds; the tree only compares them.
+ */
+public class IntervalTree {
+
+    private Node root;
+    private int size;
+
+    /**
+     * Adds an interval to the tree.
+     * @param id The appointment ID the interval belongs to.
+     * @param start The start of the interval.
+     * @param end The end of the interval.
+     */
+    public void insert(int id, long start, long end) {
+        root = insert(root, id, start, end);
+        size++;
+    }
+
+    /**
+     * Removes an interval from the tree.
+     * @param id The appointment ID the interval belongs to.
+     * @param start The start of the interval, as it was inserted.
+     * @return true if the interval was found and removed; false otherwise.
+     */
+    public boolean remove(int id, long start) {
+        int before = size;
+        root = remove(root, id, start);
+        return size < before;
+    }
+
+    /**
+     * Checks whether any interval other than the excluded one overlaps the given interval.
+     * Two intervals overlap when one starts before the other ends, or when they share the same start or the same end.
+     * @param start The start of the interval being checked.
+     * @param end The end of the interval being checked.
+     * @param excludeId An appointment ID to ignore, such as the appointment being modified, or -1 to check all.
+     * @return true if an overlapping interval exists; false otherwise.
+     */
+    public boolean overlaps(long start, long end, int excludeId) {
+        return overlaps(root, start, end, excludeId);
+    }
+
+    /**
+     * Returns the number of intervals in the tree.
+     * @return The number of intervals.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the tree holds no intervals.
+     * @return true if the tree is empty; false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static boolean overlaps(Node node, long start, long end, int excludeId) {
+        if (node == null || node.maxEnd < start) {
+            return false;
+        }
+        if (overlaps(node.left, start, end, excludeId)) {
+            return true;
+        }
+        if (node.start > end) {
+            return false;
+        }
+        if (node.id != excludeId && matches(node, start, end)) {
+            return true;
+        }
+        return overlaps(node.right, start, end, excludeId);
+    }
+
+    private static boolean matches(Node node, long start, long end) {
+        return node.start == start || node.end == end || (start < node.end && end > node.start);
+    }
+
+    private static int compare(long start, int id, Node node) {
+        int byStart = Long.compare(start, node.start);
+        return byStart != 0 ? byStart : Integer.compare(id, node.id);
+    }
+
+    private Node insert(Node node, int id, long start, long end) {
+        if (node == null) {
+            return new Node(id, start, end);
+        }
+        if (compare(start, id, node) < 0) {
+            node.left = insert(node.left, id, start, end);
+        } else {
+            node.right = insert(node.right, id, start, end);
+        }
+        return balance(node);
+    }
+
+    private Node remove(Node node, int id, long start) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(start, id, node);
+        if (comparison < 0) {
+            node.left = remove(node.left, id, start);
+        } else if (comparison > 0) {
+            node.right = remove(node.right, id, start);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.right = removeMin(node.right);
+            successor.left = node.left;
+            successor.right = node.right;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * A tree node holding one appointment interval and the latest end found in its subtree.
+     */
+    private static class Node {
+        private final int id;
+        private final long start;
+        private final long end;
+        private long maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        private Node(int id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package c195.Helper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This helper class appends the login activity log, login_activity.txt, from a single background thread.
+ * Callers only place their line on a bounded queue, sized by the {@code c195.loginLog.queueSize} system property (default 1024),
+ * and the writer appends everything waiting on the queue to the file with one write, so a burst of logins shares one write and one sync.
+ * The {@code c195.loginLog.fsync} system property controls when the file is forced to disk:
+ * {@code always} after every write, {@code interval} at most once every {@code c195.loginLog.fsyncMillis} milliseconds (the default, every second),
+ * or {@code never}, leaving it to the operating system.
+ * {@link #close()} writes and syncs everything still queued and is called when the application exits.
+ * If the file cannot be opened or written, the lines of that write are dropped with a message and the file is opened again for later lines,
+ * waiting {@code c195.loginLog.retryMillis} milliseconds (default one second) before the first retry and twice as long after each failed one, up to a minute;
+ * lines queued while waiting are dropped as well, so a full disk costs the lines written during the outage and not the rest of the session.
+ * <p>
+ * The log is kept in segments. Once login_activity.txt reaches {@code c195.loginLog.segmentBytes} (default 1 MiB) it is renamed to
+ * login_activity.000001.txt, login_activity.000002.txt and so on, and a new login_activity.txt is started.
+ * Each segment has a sparse index file (.idx) holding the time and byte offset of a line every {@code c195.loginLog.indexBytes} bytes (default 4 KiB),
+ * which {@link LoginLogReader} uses to jump to a time range without reading the lines around it.
+ * </p>
+ */
+public class LoginLog {
+
+    private static final Path file = Paths.get(System.getProperty("c195.loginLog.file", "login_activity.txt")).toAbsolutePath();
+    private static final String fsyncPolicy = System.getProperty("c195.loginLog.fsync", "interval");
+    private static final long fsyncMillis = Long.getLong("c195.loginLog.fsyncMillis", 1000L);
+    private static final long segmentBytes = Long.getLong("c195.loginLog.segmentBytes", 1L << 20);
+    private static final long indexBytes = Long.getLong("c195.loginLog.indexBytes", 4096L);
+    private static final long retryMillis = Math.max(1L, Long.getLong("c195.loginLog.retryMillis", 1000L));
+    private static final long maxRetryMillis = Math.max(retryMillis, 60_000L);
+    private static final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(Math.max(1, Integer.getInteger("c195.loginLog.queueSize", 1024)));
+    private static final Object stop = new Object();
+    private static final Pattern linePattern = Pattern.compile("^Date and Time of access: (\\d{2}-\\d{2}-\\d{4} \\d{2}:\\d{2}:\\d{2}) - User Name: (.*) - [^-]*$");
+    private static final DateTimeFormatter lineTime = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+    private static Thread writer;
+    private static boolean closed = false;
+
+    /**
+     * Queues a line to be appended to the log. A line break is added to it.
+     * Waits up to a second if the queue is full; the line is dropped with a message if it still cannot be queued.
+     * @param line The line to append.
+     */
+    public static void append(String line) {
+        if (!start()) {
+            System.out.println("Login log closed, dropped: " + line);
+            return;
+        }
+        try {
+            if (!queue.offer(line + "\n", 1, TimeUnit.SECONDS)) {
+                System.out.println("Login log queue full, dropped: " + line);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until every line queued so far has been written and synced, for example before the log is read back.
+     * @param timeoutMillis The longest time to wait, in milliseconds.
+     * @return true if the lines were written; false if the wait timed out or a line queued since the previous flush was dropped.
+     */
+    public static boolean flush(long timeoutMillis) {
+        synchronized (LoginLog.class) {
+            if (writer == null) {
+                return true;
+            }
+        }
+        Flush flush = new Flush();
+        try {
+            return queue.offer(flush, timeoutMillis, TimeUnit.MILLISECONDS) && flush.done.await(timeoutMillis, TimeUnit.MILLISECONDS) && flush.written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Writes and syncs the lines still queued, then stops the writer thread. Lines appended afterwards are dropped.
+     */
+    public static void close() {
+        Thread running;
+        synchronized (LoginLog.class) {
+            closed = true;
+            running = writer;
+            writer = null;
+        }
+        if (running == null) {
+            return;
+        }
+        try {
+            queue.put(stop);
+            running.join(5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists the segments of the log from oldest to newest; the last one is the segment being written.
+     * @return The paths of the segment files that exist.
+     * @throws IOException If the log directory cannot be listed.
+     */
+    public static List<Path> segments() throws IOException {
+        TreeMap<Integer, Path> rotated = new TreeMap<>();
+        String stem = stem();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(file.getParent(), stem + ".*" + extension())) {
+            for (Path path : paths) {
+                Integer number = segmentNumber(path.getFileName().toString());
+                if (number != null) {
+                    rotated.put(number, path);
+                }
+            }
+        }
+        List<Path> segments = new ArrayList<>(rotated.values());
+        if (Files.exists(file)) {
+            segments.add(file);
+        }
+        return segments;
+    }
+
+    /**
+     * Returns the sparse index file of a segment.
+     * @param segment The segment file.
+     * @return The path of the segment's index, which may not exist for logs written before indexing.
+     */
+    public static Path indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - extension().length()) + ".idx");
+    }
+
+    /**
+     * Reads the time a log line was recorded.
+     * @param line A line of the log, without its line break.
+     * @return The local time of the login attempt, or null if the line is not in the log's format.
+     */
+    public static LocalDateTime timeOf(String line) {
+        Matcher matcher = linePattern.matcher(line);
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(matcher.group(1), lineTime);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the user name of a log line.
+     * @param line A line of the log, without its line break.
+     * @return The user name entered for the login attempt, or null if the line is not in the log's format.
+     */
+    public static String userOf(String line) {
+        Matcher matcher = linePattern.matcher(line);
+        return matcher.matches() ? matcher.group(2) : null;
+    }
+
+    /**
+     * Converts a log time to the seconds stored in the index.
+     * @param time A local time of the log.
+     * @return The epoch second of the time in the user's time zone.
+     */
+    public static long indexTime(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private static synchronized boolean start() {
+        if (closed) {
+            return false;
+        }
+        if (writer == null) {
+            writer = new Thread(LoginLog::run, "login-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        return true;
+    }
+
+    private static void run() {
+        Segment segment = null;
+        long retryAt = 0L;
+        long backoff = retryMillis;
+        boolean lost = false;
+        try {
+            long lastSync = System.currentTimeMillis();
+            boolean unsynced = false;
+            List<Object> batch = new ArrayList<>();
+            while (true) {
+                Object first = unsynced && fsyncPolicy.equals("interval")
+                        ? queue.poll(Math.max(0L, lastSync + fsyncMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS)
+                        : queue.take();
+                batch.clear();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+
+                List<String> lines = new ArrayList<>();
+                List<Flush> flushed = new ArrayList<>();
+                boolean stopping = false;
+                for (Object entry : batch) {
+                    if (entry == stop) {
+                        stopping = true;
+                    } else if (entry instanceof Flush) {
+                        flushed.add((Flush) entry);
+                    } else {
+                        lines.add((String) entry);
+                    }
+                }
+
+                if (!lines.isEmpty() && segment == null && System.currentTimeMillis() < retryAt) {
+                    dropped(lines);
+                    lost = true;
+                } else {
+                    try {
+                        if (!lines.isEmpty()) {
+                            if (segment == null) {
+                                segment = Segment.open();
+                            } else if (segment.log.size() >= segmentBytes) {
+                                segment.close();
+                                segment = null;
+                                segment = Segment.rotate();
+                                unsynced = false;
+                            }
+                            segment.write(lines);
+                            unsynced = true;
+                        }
+
+                        long now = System.currentTimeMillis();
+                        boolean sync = unsynced && !fsyncPolicy.equals("never")
+                                && (fsyncPolicy.equals("always") || now - lastSync >= fsyncMillis || stopping || !flushed.isEmpty());
+                        if (sync) {
+                            segment.force();
+                            lastSync = now;
+                            unsynced = false;
+                        }
+                        backoff = retryMillis;
+                    } catch (IOException | RuntimeException e) {
+                        System.out.println("Login Log Error: " + e.getMessage());
+                        dropped(lines);
+                        lost = true;
+                        if (segment != null) {
+                            segment.close();
+                            segment = null;
+                        }
+                        unsynced = false;
+                        retryAt = System.currentTimeMillis() + backoff;
+                        backoff = Math.min(backoff * 2, maxRetryMillis);
+                    }
+                }
+                for (Flush flush : flushed) {
+                    flush.complete(!lost);
+                }
+                if (!flushed.isEmpty()) {
+                    lost = false;
+                }
+                if (stopping) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (segment != null) {
+                segment.close();
+            }
+            List<Object> left = new ArrayList<>();
+            queue.drainTo(left);
+            for (Object entry : left) {
+                if (entry instanceof Flush) {
+                    ((Flush) entry).complete(false);
+                }
+            }
+        }
+    }
+
+    private static void dropped(List<String> lines) {
+        for (String line : lines) {
+            System.out.println("Login log unavailable, dropped: " + line.strip());
+        }
+    }
+
+    private static String stem() {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static String extension() {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+
+    private static Integer segmentNumber(String name) {
+        String prefix = stem() + ".";
+        if (name.length() <= prefix.length() + extension().length() || !name.startsWith(prefix) || !name.endsWith(extension())) {
+            return null;
+        }
+        String number = name.substring(prefix.length(), name.length() - extension().length());
+        if (number.isEmpty() || !number.chars().allMatch(Character::isDigit)) {
+            return null;
+        }
+        return Integer.parseInt(number);
+    }
+
+    /**
+     * A request to be told once every line queued before it has been written and synced, and whether any line since the previous request was dropped.
+     */
+    private static class Flush {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean written = false;
+
+        private void complete(boolean written) {
+            this.written = written;
+            done.countDown();
+        }
+    }
+
+    /**
+     * The segment being written: the log file and its index, with the offset of the last line indexed.
+     */
+    private static class Segment {
+        private final FileChannel log;
+        private final FileChannel index;
+        private long lastIndexed;
+
+        private Segment(FileChannel log, FileChannel index, long lastIndexed) {
+            this.log = log;
+            this.index = index;
+            this.lastIndexed = lastIndexed;
+        }
+
+        /**
+         * Opens login_activity.txt for appending, first building its index if the file was written before the log was indexed.
+         */
+        private static Segment open() throws IOException {
+            Path indexPath = indexOf(file);
+            if (Files.exists(file) && Files.size(file) > 0 && !Files.exists(indexPath)) {
+                rebuildIndex(file, indexPath);
+            }
+            FileChannel log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            FileChannel index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            long lastIndexed = -1L;
+            long indexSize = Files.size(indexPath);
+            if (indexSize >= 16) {
+                try (FileChannel reader = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                    ByteBuffer entry = ByteBuffer.allocate(16);
+                    reader.read(entry, indexSize - indexSize % 16 - 16);
+                    lastIndexed = entry.getLong(8);
+                }
+            }
+            return new Segment(log, index, lastIndexed);
+        }
+
+        /**
+         * Renames the full login_activity.txt and its index to the next segment number and opens a new, empty one.
+         */
+        private static Segment rotate() throws IOException {
+            List<Path> segments = segments();
+            int next = 1;
+            for (Path segment : segments) {
+                Integer number = segmentNumber(segment.getFileName().toString());
+                if (number != null) {
+                    next = Math.max(next, number + 1);
+                }
+            }
+            Path rotated = file.resolveSibling(String.format("%s.%06d%s", stem(), next, extension()));
+            Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+            if (Files.exists(indexOf(file))) {
+                Files.move(indexOf(file), indexOf(rotated), StandardCopyOption.ATOMIC_MOVE);
+            }
+            return open();
+        }
+
+        private void write(List<String> lines) throws IOException {
+            long offset = log.size();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ByteBuffer entries = ByteBuffer.allocate(16 * lines.size());
+            for (String line : lines) {
+                long lineOffset = offset + bytes.size();
+                if (lastIndexed < 0 || lineOffset - lastIndexed >= indexBytes) {
+                    LocalDateTime time = timeOf(line.substring(0, line.length() - 1));
+                    entries.putLong(indexTime(time != null ? time : LocalDateTime.now()));
+                    entries.putLong(lineOffset);
+                    lastIndexed = lineOffset;
+                }
+                bytes.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            entries.flip();
+            while (entries.hasRemaining()) {
+                index.write(entries);
+            }
+        }
+
+        private void force() throws IOException {
+            log.force(false);
+            index.force(false);
+        }
+
+        private void close() {
+            try {
+                force();
+                log.close();
+                index.close();
+            } catch (IOException e) {
+                System.out.println("Login Log Error: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Builds the index of a segment written without one, reading it once.
+         */
+        private static void rebuildIndex(Path segment, Path indexPath) throws IOException {
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            ByteBuffer entry = ByteBuffer.allocate(16);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            long lineOffset = 0;
+            long lastIndexed = -1L;
+            try (InputStream input = new BufferedInputStream(Files.newInputStream(segment))) {
+                int b;
+                while ((b = input.read()) != -1) {
+                    offset++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    LocalDateTime time = timeOf(line.toString(StandardCharsets.UTF_8).strip());
+                    if (time != null && (lastIndexed < 0 || lineOffset - lastIndexed >= indexBytes)) {
+                        entry.clear();
+                        entry.putLong(indexTime(time)).putLong(lineOffset);
+                        entries.writeBytes(entry.array());
+                        lastIndexed = lineOffset;
+                    }
+                    line.reset();
+                    lineOffset = offset;
+                }
+            }
+            Files.write(indexPath, entries.toByteArray());
+        }
+    }
+}
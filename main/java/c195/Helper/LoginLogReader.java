@@ -0,0 +1,226 @@
+package c195.Helper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This helper class reads the login activity log a page at a time, from the newest line backwards.
+ * The segments written by {@link LoginLog} are memory-mapped and scanned from their end, so showing the latest page costs the same however long the log has grown.
+ * A page can be limited to a time range, using the sparse index of each segment to skip straight to the lines in the range, and to one user name.
+ */
+public class LoginLogReader {
+
+    /**
+     * Reads the newest page of the log matching a filter.
+     * @param user The user name to show, or null or blank for all users.
+     * @param from The earliest time to show, or null for no lower bound.
+     * @param to The latest time to show, or null for no upper bound.
+     * @param pageSize The number of lines per page.
+     * @return The newest matching lines, with the position to continue from.
+     * @throws IOException If the log cannot be read.
+     */
+    public static Page tail(String user, LocalDateTime from, LocalDateTime to, int pageSize) throws IOException {
+        List<Path> segments = LoginLog.segments();
+        Page start = new Page(Collections.emptyList(), segments, segments.size() - 1, -1L, user == null || user.isBlank() ? null : user.trim(), from, to);
+        return older(start, pageSize);
+    }
+
+    /**
+     * Reads the page of lines before a page.
+     * @param page The page read last.
+     * @param pageSize The number of lines per page.
+     * @return The next older matching lines, with the position to continue from.
+     * @throws IOException If the log cannot be read.
+     */
+    public static Page older(Page page, int pageSize) throws IOException {
+        List<String> found = new ArrayList<>();
+        int segment = page.segment;
+        long position = page.position;
+        Long toSecond = page.to == null ? null : LoginLog.indexTime(page.to);
+        Long fromSecond = page.from == null ? null : LoginLog.indexTime(page.from);
+
+        while (segment >= 0) {
+            Path path = page.segments.get(segment);
+            long size;
+            try {
+                size = Files.size(path);
+            } catch (NoSuchFileException e) {
+                segment--;
+                position = -1L;
+                continue;
+            }
+            long[] index = readIndex(LoginLog.indexOf(path));
+            long end = position < 0 ? size : Math.min(position, size);
+            long floor = 0L;
+            if (toSecond != null) {
+                end = Math.min(end, firstOffsetAfter(index, toSecond, size));
+            }
+            if (fromSecond != null) {
+                floor = lastOffsetBefore(index, fromSecond);
+            }
+
+            if (end > floor) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+                    long lineEnd = end;
+                    while (lineEnd > floor) {
+                        long lineStart = lineStart(buffer, lineEnd, floor);
+                        String line = decode(buffer, lineStart, lineEnd);
+                        if (!line.isEmpty() && page.matches(line)) {
+                            found.add(line);
+                        }
+                        lineEnd = lineStart;
+                        if (found.size() == pageSize) {
+                            Collections.reverse(found);
+                            return new Page(found, page.segments, segment, lineEnd, page.user, page.from, page.to, lineEnd > floor || floor == 0L && segment > 0);
+                        }
+                    }
+                }
+            }
+            if (floor > 0L) {
+                break;
+            }
+            segment--;
+            position = -1L;
+        }
+        Collections.reverse(found);
+        return new Page(found, page.segments, -1, -1L, page.user, page.from, page.to, false);
+    }
+
+    /**
+     * Finds the start of the line ending at an offset, stepping back over its line break.
+     */
+    private static long lineStart(MappedByteBuffer buffer, long lineEnd, long floor) {
+        long i = lineEnd - 1;
+        if (i >= floor && buffer.get((int) i) == '\n') {
+            i--;
+        }
+        while (i >= floor && buffer.get((int) i) != '\n') {
+            i--;
+        }
+        return i + 1;
+    }
+
+    private static String decode(MappedByteBuffer buffer, long lineStart, long lineEnd) {
+        byte[] bytes = new byte[(int) (lineEnd - lineStart)];
+        buffer.get((int) lineStart, bytes);
+        return new String(bytes, StandardCharsets.UTF_8).strip();
+    }
+
+    /**
+     * Reads a segment's index as alternating epoch seconds and byte offsets.
+     * @return The index, or an empty array if the segment has none.
+     */
+    private static long[] readIndex(Path indexPath) throws IOException {
+        if (!Files.exists(indexPath)) {
+            return new long[0];
+        }
+        byte[] bytes = Files.readAllBytes(indexPath);
+        LongBuffer entries = ByteBuffer.wrap(bytes, 0, bytes.length - bytes.length % 16).asLongBuffer();
+        long[] index = new long[entries.remaining()];
+        entries.get(index);
+        return index;
+    }
+
+    /**
+     * Returns the offset of the first indexed line later than a time; every line from there on is later too.
+     */
+    private static long firstOffsetAfter(long[] index, long second, long size) {
+        int low = 0;
+        int high = index.length / 2;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index[2 * middle] > second) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low < index.length / 2 ? index[2 * low + 1] : size;
+    }
+
+    /**
+     * Returns the offset of the last indexed line earlier than a time; every line before it is earlier too.
+     */
+    private static long lastOffsetBefore(long[] index, long second) {
+        int low = 0;
+        int high = index.length / 2;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index[2 * middle] < second) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low > 0 ? index[2 * (low - 1) + 1] : 0L;
+    }
+
+    /**
+     * One page of log lines, oldest first, and the position in the log to read the next older page from.
+     */
+    public static class Page {
+        private final List<String> lines;
+        private final List<Path> segments;
+        private final int segment;
+        private final long position;
+        private final String user;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final boolean hasOlder;
+
+        private Page(List<String> lines, List<Path> segments, int segment, long position, String user, LocalDateTime from, LocalDateTime to) {
+            this(lines, segments, segment, position, user, from, to, true);
+        }
+
+        private Page(List<String> lines, List<Path> segments, int segment, long position, String user, LocalDateTime from, LocalDateTime to, boolean hasOlder) {
+            this.lines = lines;
+            this.segments = segments;
+            this.segment = segment;
+            this.position = position;
+            this.user = user;
+            this.from = from;
+            this.to = to;
+            this.hasOlder = hasOlder;
+        }
+
+        /**
+         * Returns the lines of the page.
+         * @return The lines, oldest first.
+         */
+        public List<String> getLines() {
+            return lines;
+        }
+
+        /**
+         * Returns whether older lines may remain to be read.
+         * @return true if {@link #older(Page, int)} may return more lines; false if the start of the log was reached.
+         */
+        public boolean hasOlder() {
+            return hasOlder;
+        }
+
+        private boolean matches(String line) {
+            if (user != null && !user.equalsIgnoreCase(LoginLog.userOf(line))) {
+                return false;
+            }
+            if (from == null && to == null) {
+                return true;
+            }
+            LocalDateTime time = LoginLog.timeOf(line);
+            return time != null && (from == null || !time.isBefore(from)) && (to == null || !time.isAfter(to));
+        }
+    }
+}
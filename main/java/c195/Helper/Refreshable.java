@@ -0,0 +1,14 @@
+package c195.Helper;
+
+/**
+ * This interface is implemented by controllers whose view is kept by {@link ViewRegistry} and shown again on later visits.
+ * The controller's initialize method only sets up the controls; the data the view shows is loaded here instead, each time the view is shown.
+ */
+public interface Refreshable {
+
+    /**
+     * Reloads the data shown by the view and resets any input left from the previous visit.
+     * Called on the JavaFX application thread every time the view is shown, including the first.
+     */
+    void refresh();
+}
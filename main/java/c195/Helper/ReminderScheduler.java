@@ -0,0 +1,273 @@
+package c195.Helper;
+
+import c195.DAO.AppointmentsDao;
+import c195.Model.Appointments;
+import c195.Model.Customers;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This helper class shows a reminder before each upcoming appointment for as long as the application is open.
+ * The appointments starting in the next few hours are loaded with one query into a priority queue of reminders ordered by the time they are due,
+ * and a single timer is set for the earliest one, so nothing polls the database while waiting.
+ * The window is reloaded when it runs out, which defaults to every 8 hours and can be set with the {@code c195.reminders.horizonHours} system property.
+ * Reminders are shown the number of minutes before the start given by the {@code c195.reminders.leadMinutes} system property, a comma separated list defaulting to 15 and 5.
+ * The queue is kept up to date by the appointment and customer change events on the {@link EventBus}.
+ */
+public class ReminderScheduler {
+
+    private static final List<Integer> leadMinutes = leadMinutes(System.getProperty("c195.reminders.leadMinutes", "15,5"));
+    private static final long horizonMillis = Long.getLong("c195.reminders.horizonHours", 8L) * 3_600_000L;
+    private static final long maxLeadMillis = leadMinutes.stream().mapToLong(Integer::longValue).max().orElse(0L) * 60_000L;
+
+    private static final PriorityQueue<Reminder> queue = new PriorityQueue<>(Comparator.comparingLong((Reminder reminder) -> reminder.dueAt));
+    private static final Map<Integer, Appointments> scheduled = new HashMap<>();
+    private static ScheduledExecutorService timer;
+    private static ScheduledFuture<?> wakeup;
+    private static long reloadAt;
+    private static long windowEnd;
+
+    static {
+        EventBus.subscribe(Appointments.class, ReminderScheduler::onAppointments);
+        EventBus.subscribe(Customers.class, event -> {
+            if (event.getKind() == ChangeEvent.Kind.DELETED) {
+                removeCustomers(event.getIds());
+            }
+        });
+    }
+
+    /**
+     * Starts showing reminders, loading the upcoming appointments in the background. Has no effect if reminders are already running.
+     */
+    public static synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reminder-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.execute(ReminderScheduler::tick);
+    }
+
+    /**
+     * Stops showing reminders and discards the queue.
+     */
+    public static synchronized void stop() {
+        if (timer == null) {
+            return;
+        }
+        timer.shutdownNow();
+        timer = null;
+        wakeup = null;
+        queue.clear();
+        scheduled.clear();
+        windowEnd = 0;
+    }
+
+    /**
+     * Schedules the reminders of a newly added appointment, or reschedules those of a modified one.
+     * Appointments starting after the loaded window are left for the next reload.
+     * @param appointment The appointment that was saved.
+     */
+    public static synchronized void put(Appointments appointment) {
+        if (timer == null) {
+            return;
+        }
+        scheduled.remove(appointment.getAppId());
+        if (millis(appointment.getBegin()) < windowEnd) {
+            schedule(appointment, System.currentTimeMillis());
+        }
+        arm();
+    }
+
+    /**
+     * Schedules the reminders of many new appointments at once, such as those of an import, setting the timer only once.
+     * @param appointments The appointments that were saved.
+     */
+    public static synchronized void putAll(Collection<Appointments> appointments) {
+        if (timer == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Appointments appointment : appointments) {
+            scheduled.remove(appointment.getAppId());
+            if (millis(appointment.getBegin()) < windowEnd) {
+                schedule(appointment, now);
+            }
+        }
+        arm();
+    }
+
+    /**
+     * Cancels the reminders of a deleted appointment.
+     * @param appId The ID of the deleted appointment.
+     */
+    public static synchronized void remove(int appId) {
+        if (scheduled.remove(appId) != null) {
+            arm();
+        }
+    }
+
+    /**
+     * Cancels the reminders of every appointment of deleted customers.
+     * @param custIds The IDs of the deleted customers.
+     */
+    public static synchronized void removeCustomers(Collection<Integer> custIds) {
+        Set<Integer> customers = new HashSet<>(custIds);
+        if (scheduled.values().removeIf(appointment -> customers.contains(appointment.getCustId()))) {
+            arm();
+        }
+    }
+
+    /**
+     * Reschedules the reminders of saved appointments, cancels those of deleted ones, and reloads the window when the changes are not known one by one.
+     */
+    private static synchronized void onAppointments(ChangeEvent<Appointments> event) {
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                putAll(event.getEntities());
+                break;
+            case DELETED:
+                for (int appId : event.getIds()) {
+                    remove(appId);
+                }
+                break;
+            default:
+                if (timer != null) {
+                    reloadAt = 0;
+                    arm();
+                }
+        }
+    }
+
+    private static void tick() {
+        List<Reminder> due = new ArrayList<>();
+        synchronized (ReminderScheduler.class) {
+            if (timer == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= reloadAt) {
+                reload(now);
+            }
+            while (!queue.isEmpty() && queue.peek().dueAt <= now) {
+                Reminder reminder = queue.poll();
+                if (isCurrent(reminder)) {
+                    due.add(reminder);
+                }
+            }
+            arm();
+        }
+        for (Reminder reminder : due) {
+            Platform.runLater(() -> show(reminder));
+        }
+    }
+
+    private static void reload(long now) {
+        queue.clear();
+        scheduled.clear();
+        reloadAt = now + horizonMillis;
+        windowEnd = reloadAt + maxLeadMillis;
+        LocalDateTime from = LocalDateTime.now();
+        try {
+            for (Appointments appointment : AppointmentsDao.selectAppsBetween(from, from.plus(windowEnd - now, ChronoUnit.MILLIS))) {
+                schedule(appointment, now);
+            }
+        } catch (SQLException e) {
+            System.out.println("Reminder Error: " + e.getMessage());
+            reloadAt = now + 60_000L;
+            windowEnd = 0;
+        }
+    }
+
+    private static void schedule(Appointments appointment, long now) {
+        scheduled.put(appointment.getAppId(), appointment);
+        long start = millis(appointment.getBegin());
+        for (int lead : leadMinutes) {
+            long dueAt = start - lead * 60_000L;
+            if (dueAt > now) {
+                queue.add(new Reminder(appointment, lead, dueAt));
+            }
+        }
+    }
+
+    private static void arm() {
+        while (!queue.isEmpty() && !isCurrent(queue.peek())) {
+            queue.poll();
+        }
+        long next = queue.isEmpty() ? reloadAt : Math.min(queue.peek().dueAt, reloadAt);
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeup = timer.schedule(ReminderScheduler::tick, Math.max(0L, next - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isCurrent(Reminder reminder) {
+        return scheduled.get(reminder.appointment.getAppId()) == reminder.appointment;
+    }
+
+    private static void show(Reminder reminder) {
+        Appointments appointment = reminder.appointment;
+        String start = appointment.getBegin().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setHeaderText(null);
+        if (Locale.getDefault().getLanguage().equals("fr")) {
+            ResourceBundle bundle = ResourceBundle.getBundle("Lang", Locale.getDefault());
+            alert.setTitle(bundle.getString("reminderTitle"));
+            alert.setContentText(bundle.getString("appointmentID") + " " + appointment.getAppId() + " (" + appointment.getTitle() + ") " + bundle.getString("startsIn") + " " + reminder.lead + " " + bundle.getString("minutes") + ".\n" + bundle.getString("date&time") + ": " + start);
+        } else {
+            alert.setTitle("Appointment Reminder");
+            alert.setContentText("Appointment ID " + appointment.getAppId() + " (" + appointment.getTitle() + ") starts in " + reminder.lead + " minutes.\nDate & Time: " + start);
+        }
+        alert.show();
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static List<Integer> leadMinutes(String property) {
+        List<Integer> leads = new ArrayList<>();
+        for (String lead : property.split(",")) {
+            try {
+                int minutes = Integer.parseInt(lead.trim());
+                if (minutes >= 0 && !leads.contains(minutes)) {
+                    leads.add(minutes);
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring reminder lead time: " + lead);
+            }
+        }
+        return leads;
+    }
+
+    /**
+     * One reminder of an appointment, due a number of minutes before the appointment starts.
+     * A reminder is skipped if its appointment was modified or deleted after it was queued.
+     */
+    private static class Reminder {
+        private final Appointments appointment;
+        private final int lead;
+        private final long dueAt;
+
+        private Reminder(Appointments appointment, int lead, long dueAt) {
+            this.appointment = appointment;
+            this.lead = lead;
+            this.dueAt = dueAt;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package c195.Helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This helper class collects the background tasks started by one screen so they can all be cancelled when the user navigates away.
+ * Tasks remove themselves from the group when they complete.
+ */
+public class TaskGroup {
+
+    private final List<CompletableFuture<?>> pending = new ArrayList<>();
+
+    /**
+     * Adds a running task to the group.
+     * @param future The future of the task.
+     * @param <T> The type of value produced by the task.
+     * @return The same future, for chaining.
+     */
+    public synchronized <T> CompletableFuture<T> add(CompletableFuture<T> future) {
+        pending.add(future);
+        future.whenComplete((value, throwable) -> remove(future));
+        return future;
+    }
+
+    /**
+     * Cancels every task of the group that has not completed yet.
+     */
+    public void cancelAll() {
+        List<CompletableFuture<?>> running;
+        synchronized (this) {
+            running = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (CompletableFuture<?> future : running) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Returns whether any task of the group is still running.
+     * @return true if at least one task has not completed; false otherwise.
+     */
+    public synchronized boolean isBusy() {
+        return !pending.isEmpty();
+    }
+
+    private synchronized void remove(CompletableFuture<?> future) {
+        pending.remove(future);
+    }
+}
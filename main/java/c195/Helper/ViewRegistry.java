@@ -0,0 +1,118 @@
+package c195.Helper;
+
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This helper class loads each FXML view of the application once and keeps its scene and controller for every later visit.
+ * Navigating to a view swaps the cached scene onto the stage instead of parsing the FXML and building a new controller,
+ * and controllers implementing {@link Refreshable} reload their data as the view is shown.
+ * After login the remaining views can be loaded ahead of their first visit, which is on by default and can be turned off with the {@code c195.views.preload} system property.
+ * Views are only loaded on the JavaFX application thread, as their controllers bind to JavaFX controls and subscribe to change events as they are built;
+ * preloading loads one view per pulse with {@link Platform#runLater(Runnable)}, so the window stays responsive, and skips any view the user reached first, so no view is built twice.
+ */
+public class ViewRegistry {
+
+    private static final String[] views = {"login-view.fxml", "appointment-view.fxml", "addAppointment-view.fxml", "modAppointment-view.fxml",
+            "customer-view.fxml", "addCustomer-view.fxml", "modCustomer-view.fxml", "report-view.fxml"};
+    private static final boolean preloadViews = Boolean.parseBoolean(System.getProperty("c195.views.preload", "true"));
+    private static final Map<String, View> loaded = new HashMap<>();
+    private static boolean preloading = false;
+
+    /**
+     * Shows a view on the window of the control that raised an event.
+     * @param event The event triggered by the control, such as a button click.
+     * @param name The file name of the view, such as customer-view.fxml.
+     * @param <T> The type of the view's controller.
+     * @return The controller of the view, for passing it the data to show.
+     * @throws IOException If the view has not been loaded yet and its FXML file cannot be loaded.
+     */
+    public static <T> T show(ActionEvent event, String name) throws IOException {
+        return show((Stage) ((Node) event.getSource()).getScene().getWindow(), name);
+    }
+
+    /**
+     * Shows a view on a stage, loading it first if this is its first visit, and refreshes its controller.
+     * @param stage The stage to show the view on.
+     * @param name The file name of the view, such as customer-view.fxml.
+     * @param <T> The type of the view's controller.
+     * @return The controller of the view, for passing it the data to show.
+     * @throws IOException If the view has not been loaded yet and its FXML file cannot be loaded.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T show(Stage stage, String name) throws IOException {
+        View view = loaded.get(name);
+        if (view == null) {
+            FXMLLoader loader = loader(name);
+            view = new View(new Scene(loader.load()), loader.getController());
+            loaded.put(name, view);
+        }
+        if (view.controller instanceof Refreshable) {
+            ((Refreshable) view.controller).refresh();
+        }
+        stage.setScene(view.scene);
+        stage.show();
+        return (T) view.controller;
+    }
+
+    /**
+     * Loads the views not visited yet, one per pulse of the JavaFX application thread, so the first visit to each is as fast as the later ones.
+     * Must be called on the JavaFX application thread. Has no effect if preloading is turned off or has already started.
+     */
+    public static void preload() {
+        if (!preloadViews || preloading) {
+            return;
+        }
+        preloading = true;
+        Platform.runLater(() -> preloadFrom(1));
+    }
+
+    /**
+     * Loads the next view not loaded yet, starting at an index of the views, and schedules the one after it.
+     */
+    private static void preloadFrom(int index) {
+        while (index < views.length && loaded.containsKey(views[index])) {
+            index++;
+        }
+        if (index == views.length) {
+            return;
+        }
+        String name = views[index];
+        try {
+            FXMLLoader loader = loader(name);
+            loaded.put(name, new View(new Scene(loader.load()), loader.getController()));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Preload Error: " + name + " - " + e.getMessage());
+        }
+        int next = index + 1;
+        Platform.runLater(() -> preloadFrom(next));
+    }
+
+    private static FXMLLoader loader(String name) {
+        URL location = Objects.requireNonNull(ViewRegistry.class.getResource("/c195/Controllers/" + name), name);
+        return new FXMLLoader(location);
+    }
+
+    /**
+     * One loaded view: the scene holding its root node and the controller built for it.
+     */
+    private static class View {
+        private final Scene scene;
+        private final Object controller;
+
+        private View(Scene scene, Object controller) {
+            this.scene = scene;
+            this.controller = controller;
+        }
+    }
+}
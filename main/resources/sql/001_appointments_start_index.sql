@@ -0,0 +1,5 @@
+-- Index on appointments.Start for the range queries in AppointmentsDao.selectAppsBetween,
+-- which back the "This Month" and "This Week" views (Start >= ? AND Start < ?).
+-- Run once against client_schedule:  mysql -u <admin> client_schedule < 001_appointments_start_index.sql
+
+CREATE INDEX idx_appointments_start ON appointments (Start);
@@ -0,0 +1,6 @@
+-- Indexes on Last_Update for the change polling in DeltaSync,
+-- which reads only the rows updated since the previous poll (Last_Update >= ?).
+-- Run once against client_schedule:  mysql -u <admin> client_schedule < 002_last_update_indexes.sql
+
+CREATE INDEX idx_appointments_last_update ON appointments (Last_Update);
+CREATE INDEX idx_customers_last_update ON customers (Last_Update);
@@ -0,0 +1,18 @@
+-- Tombstones of deleted appointments and customers for the change polling in DeltaSync,
+-- which reads only the rows deleted since the previous poll (Deleted_At >= ?) instead of comparing every ID.
+-- The triggers record every delete, whichever client or tool makes it.
+-- Run once against client_schedule:  mysql -u <admin> client_schedule < 003_tombstones.sql
+
+CREATE TABLE tombstones (
+    Tombstone_ID BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    Table_Name VARCHAR(50) NOT NULL,
+    Row_ID INT NOT NULL,
+    Deleted_At DATETIME NOT NULL,
+    INDEX idx_tombstones_deleted_at (Table_Name, Deleted_At)
+);
+
+CREATE TRIGGER appointments_tombstone AFTER DELETE ON appointments
+    FOR EACH ROW INSERT INTO tombstones (Table_Name, Row_ID, Deleted_At) VALUES ('appointments', OLD.Appointment_ID, NOW());
+
+CREATE TRIGGER customers_tombstone AFTER DELETE ON customers
+    FOR EACH ROW INSERT INTO tombstones (Table_Name, Row_ID, Deleted_At) VALUES ('customers', OLD.Customer_ID, NOW());